@@ -25,6 +25,16 @@ public class MessageConstant {
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
     public static final String ORDER_TIME_OUT = "订单超时,自动取消";
+    public static final String SHOP_ADDRESS_PARSE_FAILED = "店铺地址解析失败";
+    public static final String ADDRESS_PARSE_FAILED = "收货地址解析失败";
+    public static final String DELIVERY_ROUTE_FAILED = "配送路线规划失败";
+    public static final String OUT_OF_DELIVERY_RANGE = "超出配送范围";
     public static final String CUSTOMER_REMINDERS = "用户催单了";
+    public static final String REPORT_DATE_ERROR = "报表日期区间不正确";
+    public static final String REPORT_DATE_RANGE_TOO_LARGE = "报表日期区间过长";
+    public static final String REPORT_TYPE_ERROR = "不支持的报表类型";
+    public static final String REPORT_EXPORT_BUSY = "导出任务过多，请稍后再试";
+    public static final String REPORT_EXPORT_JOB_NOT_FOUND = "导出任务不存在或已过期";
+    public static final String REPORT_EXPORT_NOT_FINISHED = "报表尚未导出完成";
 
 }
@@ -0,0 +1,32 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.delivery")
+@Data
+public class DeliveryProperties {
+
+    /**
+     * 百度地图地理编码接口地址
+     */
+    private String geocodingUrl = "https://api.map.baidu.com/geocoding/v3";
+
+    /**
+     * 百度地图驾车路线规划接口地址
+     */
+    private String drivingUrl = "https://api.map.baidu.com/directionlite/v1/driving";
+
+    /**
+     * 最大配送距离 单位米
+     */
+    private int maxDistance = 20000;
+
+    /**
+     * 收货地址经纬度坐标的缓存小时数
+     */
+    private int geocodeExpireHours = 168;
+
+}
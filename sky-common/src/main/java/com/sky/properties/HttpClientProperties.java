@@ -0,0 +1,60 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "sky.http-client")
+@Data
+public class HttpClientProperties {
+
+    /**
+     * 连接池最大连接数
+     */
+    private int maxTotal = 200;
+
+    /**
+     * 每个目标主机默认的最大连接数
+     */
+    private int defaultMaxPerRoute = 20;
+
+    /**
+     * 单独指定目标主机的最大连接数 key为主机地址 如https://api.weixin.qq.com
+     */
+    private Map<String, Integer> maxPerRoute = new HashMap<>();
+
+    /**
+     * 建立连接的超时毫秒数
+     */
+    private int connectTimeout = 5000;
+
+    /**
+     * 从连接池获取连接的超时毫秒数
+     */
+    private int connectionRequestTimeout = 2000;
+
+    /**
+     * 读取响应的超时毫秒数
+     */
+    private int socketTimeout = 5000;
+
+    /**
+     * 服务端未指定Keep-Alive时连接保持的秒数
+     */
+    private int keepAliveSeconds = 30;
+
+    /**
+     * 空闲超过多少秒的连接会被关闭
+     */
+    private int maxIdleSeconds = 60;
+
+    /**
+     * 连接空闲超过多少毫秒后 再次使用前先检查是否可用
+     */
+    private int validateAfterInactivity = 2000;
+
+}
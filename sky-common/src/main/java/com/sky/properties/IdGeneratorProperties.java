@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.id-generator")
+@Data
+public class IdGeneratorProperties {
+
+    /**
+     * 节点id 0-1023 同时运行的每个节点必须不同 没有默认值 未配置时启动失败
+     */
+    private Long workerId;
+
+    /**
+     * 起始时间戳 默认为2024-01-01 00:00:00 +08:00 设置后不能修改
+     */
+    private long epoch = 1704038400000L;
+
+    /**
+     * 允许的最大时钟回拨毫秒数
+     */
+    private long maxBackwardMillis = 5000;
+
+}
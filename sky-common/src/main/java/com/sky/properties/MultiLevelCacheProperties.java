@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache")
+@Data
+public class MultiLevelCacheProperties {
+
+    /**
+     * 每个缓存在本地(一级缓存)最多保存的条数
+     */
+    private long localMaximumSize = 1000;
+
+    /**
+     * 本地缓存写入后过期的秒数 作为丢失失效通知时的兜底
+     */
+    private long localExpireSeconds = 300;
+
+    /**
+     * 通知其他节点删除本地缓存的Redis频道
+     */
+    private String evictChannel = "sky:cache:evict";
+
+}
@@ -0,0 +1,42 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-task")
+@Data
+public class OrderTaskProperties {
+
+    /**
+     * 下单后多少分钟未支付自动取消
+     */
+    private int paymentTimeoutMinutes = 15;
+
+    /**
+     * 批量修改订单时每条update语句最多修改的行数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 扫描延迟队列中到期订单的间隔毫秒数
+     */
+    private long timeoutPollInterval = 1000;
+
+    /**
+     * 派送中的订单下单多少分钟后自动完成
+     */
+    private int deliveryCompleteMinutes = 60;
+
+    /**
+     * 每批至少修改一行 否则分批循环无法结束 配置错误时启动失败
+     * @param batchSize
+     */
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "sky.order-task.batch-size必须大于0");
+        this.batchSize = batchSize;
+    }
+
+}
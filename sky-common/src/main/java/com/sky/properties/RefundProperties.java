@@ -0,0 +1,48 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.refund")
+@Data
+public class RefundProperties {
+
+    /**
+     * 扫描待退款记录的间隔毫秒数
+     */
+    private long pollInterval = 5000;
+
+    /**
+     * 每次扫描最多处理的退款数量
+     */
+    private int batchSize = 100;
+
+    /**
+     * 最多重试次数 超过后标记为退款失败 需要人工处理
+     */
+    private int maxRetries = 10;
+
+    /**
+     * 第一次重试的间隔秒数 之后每次翻倍
+     */
+    private int initialBackoffSeconds = 10;
+
+    /**
+     * 重试间隔的最大秒数
+     */
+    private int maxBackoffSeconds = 3600;
+
+    /**
+     * 领取退款任务后的锁定秒数 处理线程异常退出时超过该时间会被重新处理
+     */
+    private int leaseSeconds = 60;
+
+    private int corePoolSize = 2;
+
+    private int maxPoolSize = 4;
+
+    private int queueCapacity = 200;
+
+}
@@ -0,0 +1,41 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+@Component
+@ConfigurationProperties(prefix = "sky.report.export")
+@Data
+public class ReportExportProperties {
+
+    /**
+     * 导出文件存放的目录
+     */
+    private String fileDir = System.getProperty("java.io.tmpdir") + File.separator + "sky-report";
+
+    /**
+     * 导出线程池配置
+     */
+    private int corePoolSize = 2;
+    private int maxPoolSize = 4;
+    private int queueCapacity = 100;
+
+    /**
+     * 导出任务及其文件保留的分钟数
+     */
+    private int jobExpireMinutes = 60;
+
+    /**
+     * 已结束时间区间的导出文件缓存的小时数
+     */
+    private int cacheExpireHours = 24;
+
+    /**
+     * 单次最多导出的天数
+     */
+    private int maxDays = 366;
+
+}
@@ -0,0 +1,37 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.shopping-cart")
+@Data
+public class ShoppingCartProperties {
+
+    /**
+     * 是否将购物车保存在Redis中 为false时直接读写shopping_cart表
+     */
+    private boolean redisEnabled = true;
+
+    /**
+     * 是否将Redis中修改过的购物车定时写回shopping_cart表
+     */
+    private boolean writeBehind = true;
+
+    /**
+     * 写回的间隔毫秒数
+     */
+    private long flushInterval = 5000;
+
+    /**
+     * 每次最多写回的购物车数量
+     */
+    private int flushBatchSize = 200;
+
+    /**
+     * Redis中的购物车多少天未修改后过期
+     */
+    private int expireDays = 7;
+
+}
@@ -0,0 +1,49 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.websocket")
+@Data
+public class WebSocketProperties {
+
+    /**
+     * 建立连接时是否必须携带管理端令牌 管理端页面需要在连接地址中加上 ?token=登录令牌
+     * 页面升级前可临时设为false 携带了无效令牌的连接仍然会被断开
+     */
+    private boolean requireToken = true;
+
+    /**
+     * 每个连接最多积压的待发送消息数 超过后丢弃新消息
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * 连续丢弃多少条消息后断开连接 客户端重连后重新接收
+     */
+    private int maxDroppedMessages = 50;
+
+    /**
+     * 发送一条消息的超时毫秒数
+     */
+    private long sendTimeoutMillis = 5000;
+
+    /**
+     * 各节点之间广播消息的Redis频道
+     */
+    private String broadcastChannel = "sky:ws:broadcast";
+
+    /**
+     * 合并同一订单同类消息的窗口毫秒数 为0时不合并
+     */
+    private long coalesceMillis = 200;
+
+    private int corePoolSize = 4;
+
+    private int maxPoolSize = 8;
+
+    private int executorQueueCapacity = 10000;
+
+}
@@ -0,0 +1,30 @@
+package com.sky.result;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 封装游标分页查询结果 下一页使用最后一条记录的时间和id作为游标查询
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class CursorPageResult extends PageResult {
+
+    private boolean hasMore; //是否还有下一页
+
+    private String nextCursorTime; //下一页游标 最后一条记录的下单时间 格式yyyy-MM-dd HH:mm:ss
+
+    private Long nextCursorId; //下一页游标 最后一条记录的id
+
+    public CursorPageResult(long total, List records, boolean hasMore, String nextCursorTime, Long nextCursorId) {
+        super(total, records);
+        this.hasMore = hasMore;
+        this.nextCursorTime = nextCursorTime;
+        this.nextCursorId = nextCursorId;
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.sky.utils;
+
+/**
+ * 经纬度计算工具类
+ */
+public class GeoUtil {
+
+    // 地球平均半径 单位米
+    private static final double EARTH_RADIUS = 6371_000D;
+
+    /**
+     * 使用haversine公式计算两点之间的球面直线距离
+     *
+     * @param lat1 起点纬度
+     * @param lng1 起点经度
+     * @param lat2 终点纬度
+     * @param lng2 终点经度
+     * @return 距离 单位米
+     */
+    public static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
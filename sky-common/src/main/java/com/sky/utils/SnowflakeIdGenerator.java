@@ -0,0 +1,88 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法id生成器 不加锁 多线程和多节点生成的id不重复
+ * id由 41位毫秒时间戳 + 10位节点id + 12位序列号 组成 同一节点生成的id单调递增
+ */
+public class SnowflakeIdGenerator {
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_ID_BITS + SEQUENCE_BITS;
+
+    private final long workerId;
+    // 起始时间戳 id中保存的是与起始时间的差值
+    private final long epoch;
+    // 允许的最大时钟回拨毫秒数 回拨不超过该值时继续使用上次的时间戳 超过时抛出异常
+    private final long maxBackwardMillis;
+
+    // 上次生成id使用的时间戳和序列号 时间戳 << 序列号位数 | 序列号 通过CAS更新
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long workerId, long epoch, long maxBackwardMillis) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("节点id必须在0到" + MAX_WORKER_ID + "之间: " + workerId);
+        }
+        this.workerId = workerId;
+        this.epoch = epoch;
+        this.maxBackwardMillis = maxBackwardMillis;
+    }
+
+    /**
+     * 生成下一个id
+     *
+     * @return
+     */
+    public long nextId() {
+        while (true) {
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+            long lastSequence = last & MAX_SEQUENCE;
+            long now = currentTimeMillis() - epoch;
+
+            long timestamp;
+            long sequence;
+            if (now > lastTimestamp) {
+                timestamp = now;
+                sequence = 0;
+            } else if (lastTimestamp - now > maxBackwardMillis) {
+                throw new IllegalStateException("系统时钟回拨了" + (lastTimestamp - now) + "毫秒，拒绝生成id");
+            } else if (lastSequence < MAX_SEQUENCE) {
+                // 同一毫秒内 或时钟小幅回拨时沿用上次的时间戳 保证id递增
+                timestamp = lastTimestamp;
+                sequence = lastSequence + 1;
+            } else {
+                // 当前毫秒的序列号已用完 等待下一毫秒
+                Thread.yield();
+                continue;
+            }
+
+            if (state.compareAndSet(last, timestamp << SEQUENCE_BITS | sequence)) {
+                return timestamp << TIMESTAMP_SHIFT | workerId << SEQUENCE_BITS | sequence;
+            }
+        }
+    }
+
+    /**
+     * 当前时间毫秒数 测试时可以重写来模拟时钟回拨
+     *
+     * @return
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 生成下一个id的字符串形式 用作订单号、退款单号
+     *
+     * @return
+     */
+    public String nextIdStr() {
+        return String.valueOf(nextId());
+    }
+}
@@ -5,6 +5,7 @@ import com.alibaba.fastjson.JSONObject;
 import com.sky.properties.WeChatProperties;
 import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
 import com.wechat.pay.contrib.apache.httpclient.util.PemUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.http.HttpHeaders;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -13,63 +14,135 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.cert.X509Certificate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 微信支付工具类
  */
 @Component
-public class WeChatPayUtil {
+@Slf4j
+public class WeChatPayUtil implements DisposableBean {
 
-    //微信支付下单接口地址
-    public static final String JSAPI = "https://api.mch.weixin.qq.com/v3/pay/transactions/jsapi";
+    //微信支付下单接口路径 接口地址由配置的apiBaseUrl加上接口路径组成
+    public static final String JSAPI = "/v3/pay/transactions/jsapi";
 
-    //申请退款接口地址
-    public static final String REFUNDS = "https://api.mch.weixin.qq.com/v3/refund/domestic/refunds";
+    //申请退款接口路径
+    public static final String REFUNDS = "/v3/refund/domestic/refunds";
+
+    // 调用微信支付接口的最大连接数 只访问一个域名
+    private static final int MAX_CONNECTIONS = 50;
+
+    // 二次签名对象 Signature不是线程安全的 每个线程复用一个
+    private static final ThreadLocal<Signature> SIGNATURE = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("SHA256withRSA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
 
     @Autowired
     private WeChatProperties weChatProperties;
 
+    // 所有客户端共用的连接池 重新加载密钥时不会关闭
+    private final PoolingHttpClientConnectionManager connectionManager = createConnectionManager();
+
+    // 当前使用的商户私钥、平台证书和客户端 文件修改后重新加载
+    private volatile PayClient payClient;
+
     /**
-     * 获取调用微信接口的客户端工具对象
+     * 获取调用微信接口的客户端工具对象 首次使用时创建 私钥或平台证书文件修改后重新创建
      *
      * @return
      */
-    private CloseableHttpClient getClient() {
-        PrivateKey merchantPrivateKey = null;
-        try {
-            //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
-            merchantPrivateKey = PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath())));
-            //加载平台证书文件
-            X509Certificate x509Certificate = PemUtil.loadCertificate(new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath())));
-            //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
-            List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
-
-            WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
-                    .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
-                    .withWechatPay(wechatPayCertificates);
-
-            // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
-            CloseableHttpClient httpClient = builder.build();
-            return httpClient;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            return null;
+    private PayClient getClient() throws Exception {
+        File privateKeyFile = new File(weChatProperties.getPrivateKeyFilePath());
+        File certFile = new File(weChatProperties.getWeChatPayCertFilePath());
+        PayClient client = payClient;
+        if (client != null && !client.isModified(privateKeyFile, certFile)) {
+            return client;
+        }
+        synchronized (this) {
+            client = payClient;
+            if (client == null || client.isModified(privateKeyFile, certFile)) {
+                PayClient oldClient = client;
+                client = loadClient(privateKeyFile, certFile);
+                payClient = client;
+                if (oldClient != null) {
+                    log.info("微信支付商户私钥或平台证书已更新，重新创建客户端");
+                    // 连接池是共用的 关闭旧客户端不影响正在执行的请求
+                    oldClient.httpClient.close();
+                }
+            }
         }
+        return client;
+    }
+
+    private PayClient loadClient(File privateKeyFile, File certFile) throws Exception {
+        // 先记录修改时间再读取文件 读取期间文件被修改时下次调用会再次加载
+        long privateKeyModified = privateKeyFile.lastModified();
+        long certModified = certFile.lastModified();
+        PrivateKey merchantPrivateKey;
+        X509Certificate x509Certificate;
+        //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
+        try (InputStream in = new FileInputStream(privateKeyFile)) {
+            merchantPrivateKey = PemUtil.loadPrivateKey(in);
+        }
+        //加载平台证书文件
+        try (InputStream in = new FileInputStream(certFile)) {
+            x509Certificate = PemUtil.loadCertificate(in);
+        }
+        //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
+        List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
+
+        WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
+                .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
+                .withWechatPay(wechatPayCertificates);
+        builder.setConnectionManager(connectionManager);
+        builder.setConnectionManagerShared(true);
+
+        // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
+        CloseableHttpClient httpClient = builder.build();
+        return new PayClient(httpClient, merchantPrivateKey, privateKeyModified, certModified);
+    }
+
+    private static PoolingHttpClientConnectionManager createConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        connectionManager.setValidateAfterInactivity(2000);
+        return connectionManager;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        PayClient client = payClient;
+        if (client != null) {
+            client.httpClient.close();
+        }
+        connectionManager.shutdown();
     }
 
     /**
@@ -80,7 +153,7 @@ public class WeChatPayUtil {
      * @return
      */
     private String post(String url, String body) throws Exception {
-        CloseableHttpClient httpClient = getClient();
+        CloseableHttpClient httpClient = getClient().httpClient;
 
         HttpPost httpPost = new HttpPost(url);
         httpPost.addHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.toString());
@@ -88,13 +161,10 @@ public class WeChatPayUtil {
         httpPost.addHeader("Wechatpay-Serial", weChatProperties.getMchSerialNo());
         httpPost.setEntity(new StringEntity(body, "UTF-8"));
 
-        CloseableHttpResponse response = httpClient.execute(httpPost);
-        try {
+        // 关闭响应后连接归还连接池 客户端复用不关闭
+        try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
-        } finally {
-            httpClient.close();
-            response.close();
         }
     }
 
@@ -105,20 +175,16 @@ public class WeChatPayUtil {
      * @return
      */
     private String get(String url) throws Exception {
-        CloseableHttpClient httpClient = getClient();
+        CloseableHttpClient httpClient = getClient().httpClient;
 
         HttpGet httpGet = new HttpGet(url);
         httpGet.addHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.toString());
         httpGet.addHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
         httpGet.addHeader("Wechatpay-Serial", weChatProperties.getMchSerialNo());
 
-        CloseableHttpResponse response = httpClient.execute(httpGet);
-        try {
+        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
-        } finally {
-            httpClient.close();
-            response.close();
         }
     }
 
@@ -129,15 +195,22 @@ public class WeChatPayUtil {
      * @param total       总金额
      * @param description 商品描述
      * @param openid      微信用户的openid
+     * @param timeExpire  支付截止时间 为null时不限制
      * @return
      */
-    private String jsapi(String orderNum, BigDecimal total, String description, String openid) throws Exception {
+    private String jsapi(String orderNum, BigDecimal total, String description, String openid,
+                         LocalDateTime timeExpire) throws Exception {
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("appid", weChatProperties.getAppid());
         jsonObject.put("mchid", weChatProperties.getMchid());
         jsonObject.put("description", description);
         jsonObject.put("out_trade_no", orderNum);
         jsonObject.put("notify_url", weChatProperties.getNotifyUrl());
+        if (timeExpire != null) {
+            // rfc3339格式 超过截止时间后微信拒绝支付
+            jsonObject.put("time_expire", timeExpire.truncatedTo(ChronoUnit.SECONDS)
+                    .atZone(ZoneId.systemDefault()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        }
 
         JSONObject amount = new JSONObject();
         amount.put("total", total.multiply(new BigDecimal(100)).setScale(2, BigDecimal.ROUND_HALF_UP).intValue());
@@ -151,7 +224,7 @@ public class WeChatPayUtil {
         jsonObject.put("payer", payer);
 
         String body = jsonObject.toJSONString();
-        return post(JSAPI, body);
+        return post(weChatProperties.getApiBaseUrl() + JSAPI, body);
     }
 
     /**
@@ -164,8 +237,23 @@ public class WeChatPayUtil {
      * @return
      */
     public JSONObject pay(String orderNum, BigDecimal total, String description, String openid) throws Exception {
+        return pay(orderNum, total, description, openid, null);
+    }
+
+    /**
+     * 小程序支付
+     *
+     * @param orderNum    商户订单号
+     * @param total       金额，单位 元
+     * @param description 商品描述
+     * @param openid      微信用户的openid
+     * @param timeExpire  支付截止时间 为null时不限制
+     * @return
+     */
+    public JSONObject pay(String orderNum, BigDecimal total, String description, String openid,
+                          LocalDateTime timeExpire) throws Exception {
         //统一下单，生成预支付交易单
-        String bodyAsString = jsapi(orderNum, total, description, openid);
+        String bodyAsString = jsapi(orderNum, total, description, openid, timeExpire);
         //解析返回结果
         JSONObject jsonObject = JSON.parseObject(bodyAsString);
         System.out.println(jsonObject);
@@ -187,8 +275,8 @@ public class WeChatPayUtil {
             String signMessage = stringBuilder.toString();
             byte[] message = signMessage.getBytes();
 
-            Signature signature = Signature.getInstance("SHA256withRSA");
-            signature.initSign(PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath()))));
+            Signature signature = SIGNATURE.get();
+            signature.initSign(getClient().privateKey);
             signature.update(message);
             String packageSign = Base64.getEncoder().encodeToString(signature.sign());
 
@@ -230,6 +318,27 @@ public class WeChatPayUtil {
         String body = jsonObject.toJSONString();
 
         //调用申请退款接口
-        return post(REFUNDS, body);
+        return post(weChatProperties.getApiBaseUrl() + REFUNDS, body);
+    }
+
+    /**
+     * 微信支付客户端及加载时使用的商户私钥 记录文件修改时间用于判断是否需要重新加载
+     */
+    private static class PayClient {
+        private final CloseableHttpClient httpClient;
+        private final PrivateKey privateKey;
+        private final long privateKeyModified;
+        private final long certModified;
+
+        private PayClient(CloseableHttpClient httpClient, PrivateKey privateKey, long privateKeyModified, long certModified) {
+            this.httpClient = httpClient;
+            this.privateKey = privateKey;
+            this.privateKeyModified = privateKeyModified;
+            this.certModified = certModified;
+        }
+
+        private boolean isModified(File privateKeyFile, File certFile) {
+            return privateKeyFile.lastModified() != privateKeyModified || certFile.lastModified() != certModified;
+        }
     }
 }
@@ -0,0 +1,181 @@
+package com.sky.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 雪花算法id生成器测试
+ */
+@Slf4j
+class SnowflakeIdGeneratorTest {
+
+    private static final long EPOCH = 1704038400000L;
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, EPOCH, 5000);
+        int threads = 8;
+        int idsPerThread = 50000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    // 同一线程内生成的id单调递增
+                    long last = -1;
+                    for (int j = 0; j < idsPerThread; j++) {
+                        long id = generator.nextId();
+                        if (id <= last) {
+                            return false;
+                        }
+                        last = id;
+                        ids.add(id);
+                    }
+                    return true;
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(threads * idsPerThread, ids.size());
+    }
+
+    @Test
+    void differentWorkersNeverCollide() {
+        SnowflakeIdGenerator first = new SnowflakeIdGenerator(1, EPOCH, 5000);
+        SnowflakeIdGenerator second = new SnowflakeIdGenerator(2, EPOCH, 5000);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(ids.add(first.nextId()));
+            assertTrue(ids.add(second.nextId()));
+        }
+    }
+
+    @Test
+    void workerIdIsEncodedInId() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_WORKER_ID, EPOCH, 5000);
+        long id = generator.nextId();
+        assertEquals(SnowflakeIdGenerator.MAX_WORKER_ID, (id >>> 12) & SnowflakeIdGenerator.MAX_WORKER_ID);
+        assertEquals(String.valueOf(generator.nextId()).length(), generator.nextIdStr().length());
+    }
+
+    @Test
+    void rejectsWorkerIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1, EPOCH, 5000));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_WORKER_ID + 1, EPOCH, 5000));
+    }
+
+    @Test
+    void smallClockRollbackReusesLastTimestamp() {
+        ManualClockIdGenerator generator = new ManualClockIdGenerator(EPOCH + 100000);
+        long first = generator.nextId();
+
+        // 回拨不超过允许值时沿用上次的时间戳 序列号加一 id仍然递增
+        generator.clock.addAndGet(-5000);
+        long second = generator.nextId();
+        assertTrue(second > first);
+        assertEquals(first >>> 22, second >>> 22);
+        assertEquals((first & 4095) + 1, second & 4095);
+
+        // 时钟追上后恢复使用当前时间
+        generator.clock.addAndGet(5001);
+        long third = generator.nextId();
+        assertEquals((first >>> 22) + 1, third >>> 22);
+        assertEquals(0, third & 4095);
+    }
+
+    @Test
+    void largeClockRollbackIsRejected() {
+        ManualClockIdGenerator generator = new ManualClockIdGenerator(EPOCH + 100000);
+        long first = generator.nextId();
+
+        generator.clock.addAndGet(-5001);
+        assertThrows(IllegalStateException.class, generator::nextId);
+
+        // 时钟恢复后可以继续生成 不会与回拨前的id重复
+        generator.clock.addAndGet(5001);
+        assertTrue(generator.nextId() > first);
+    }
+
+    @Test
+    void throughput() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, EPOCH, 5000);
+        int total = 2000000;
+        // 预热
+        for (int i = 0; i < total / 10; i++) {
+            generator.nextId();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            generator.nextId();
+        }
+        double singleThread = total * 1e9 / (System.nanoTime() - start);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            start = System.nanoTime();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> {
+                    for (int j = 0; j < total / threads; j++) {
+                        generator.nextId();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        double multiThread = total * 1e9 / (System.nanoTime() - start);
+
+        log.info("单线程每秒生成{}个id，{}个线程每秒生成{}个id", (long) singleThread, threads, (long) multiThread);
+        // 每毫秒最多4096个 即每秒约409万个 这里只检查没有明显退化
+        assertTrue(singleThread > 500000, "单线程每秒生成id数: " + (long) singleThread);
+        assertTrue(multiThread > 500000, "多线程每秒生成id数: " + (long) multiThread);
+    }
+
+    /**
+     * 使用手动控制的时钟 用来模拟时钟回拨
+     */
+    private static class ManualClockIdGenerator extends SnowflakeIdGenerator {
+
+        private final AtomicLong clock;
+
+        private ManualClockIdGenerator(long startMillis) {
+            super(1, EPOCH, 5000);
+            this.clock = new AtomicLong(startMillis);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return clock.get();
+        }
+    }
+}
@@ -28,4 +28,14 @@ public class OrdersPageQueryDTO implements Serializable {
 
     private Long userId;
 
+    //游标分页 上一页最后一条订单的下单时间
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime cursorTime;
+
+    //游标分页 上一页最后一条订单的id
+    private Long cursorId;
+
+    //是否跳过总记录数的查询
+    private Boolean skipCount;
+
 }
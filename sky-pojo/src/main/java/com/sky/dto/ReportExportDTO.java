@@ -0,0 +1,31 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportExportDTO implements Serializable {
+
+    /**
+     * 报表类型 business运营数据报表
+     */
+    public static final String BUSINESS_DATA = "business";
+
+    //开始日期
+    private LocalDate begin;
+
+    //结束日期
+    private LocalDate end;
+
+    //报表类型
+    private String type;
+
+}
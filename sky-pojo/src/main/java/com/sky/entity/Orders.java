@@ -40,7 +40,7 @@ public class Orders implements Serializable {
     private Long id;
 
     //订单号
-    private String number; // 使用当前时间戳表示
+    private String number; // 雪花算法生成
 
     //订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消 7退款
     private Integer status;
@@ -0,0 +1,62 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 待处理的退款申请 与订单状态在同一个事务中写入 由后台线程调用微信退款接口
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefundOutbox implements Serializable {
+
+    /**
+     * 退款状态 0待退款 1已退款 2退款失败
+     */
+    public static final Integer PENDING = 0;
+    public static final Integer SUCCESS = 1;
+    public static final Integer FAILED = 2;
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //订单id
+    private Long orderId;
+
+    //商户订单号
+    private String outTradeNo;
+
+    //商户退款单号 同一退款单号重复申请时微信只退款一次
+    private String outRefundNo;
+
+    //退款金额
+    private BigDecimal refundAmount;
+
+    //原订单金额
+    private BigDecimal totalAmount;
+
+    //退款状态
+    private Integer status;
+
+    //已重试次数
+    private Integer retryCount;
+
+    //下次处理时间
+    private LocalDateTime nextRetryTime;
+
+    //最后一次失败原因
+    private String lastError;
+
+    private LocalDateTime createTime;
+
+    private LocalDateTime updateTime;
+}
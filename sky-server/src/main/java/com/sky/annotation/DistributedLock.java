@@ -0,0 +1,25 @@
+package com.sky.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 自定义注解 用来标识某个方法同一时间只能在一个节点上执行 一般用在定时任务上
+ * 获取不到锁的节点直接跳过本次执行
+ * 方法执行超过最长持有时间后锁会被其他节点获取 被加锁的方法需要按状态条件修改数据 重复执行时结果不变
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DistributedLock {
+
+    // 锁的名称 默认使用 类名.方法名
+    String value() default "";
+
+    // 最长持有锁的毫秒数 节点宕机时锁会在该时间后自动释放 需要大于方法的最长执行时间
+    long leaseMillis() default 10 * 60 * 1000;
+
+    // 最短持有锁的毫秒数 方法执行完成后至少保留到该时间 避免各节点时钟不一致时同一轮任务被执行多次
+    long minLeaseMillis() default 0;
+}
@@ -0,0 +1,96 @@
+package com.sky.aspect;
+
+import com.sky.annotation.DistributedLock;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自定义切面 基于Redis实现分布式锁 保证加了@DistributedLock的方法同一时间只在一个节点上执行
+ */
+@Slf4j
+@Aspect
+@Component
+public class DistributedLockAspect {
+
+    private static final String LOCK_KEY_PREFIX = "lock:";
+
+    // 锁仍由自己持有时释放锁 ARGV: 持有者标识 剩余需要保留的毫秒数
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) ~= ARGV[1] then return 0 end " +
+            "if tonumber(ARGV[2]) > 0 then redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "else redis.call('del', KEYS[1]) end " +
+            "return 1", Long.class);
+
+    // 当前节点的标识 用来区分锁的持有者
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+    // 当前节点获取锁的次数 与节点标识一起区分每一次加锁
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Around("@annotation(com.sky.annotation.DistributedLock)")
+    public Object lock(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        DistributedLock distributedLock = method.getAnnotation(DistributedLock.class);
+        String name = distributedLock.value().isEmpty()
+                ? method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                : distributedLock.value();
+        String key = LOCK_KEY_PREFIX + name;
+
+        String owner = nodeId + ":" + sequence.incrementAndGet();
+        try {
+            Boolean acquired = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(key, owner, distributedLock.leaseMillis(), TimeUnit.MILLISECONDS);
+            if (!Boolean.TRUE.equals(acquired)) {
+                log.debug("分布式锁已被其他节点持有，跳过本次执行: {}", name);
+                meterRegistry.counter("sky.lock.acquire", "lock", name, "result", "skipped").increment();
+                return null;
+            }
+        } catch (Exception e) {
+            // 无法确认其他节点是否在执行 跳过本次执行
+            log.error("获取分布式锁失败，跳过本次执行: {}", name, e);
+            meterRegistry.counter("sky.lock.acquire", "lock", name, "result", "error").increment();
+            return null;
+        }
+        meterRegistry.counter("sky.lock.acquire", "lock", name, "result", "acquired").increment();
+
+        long start = System.currentTimeMillis();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            long held = System.currentTimeMillis() - start;
+            meterRegistry.timer("sky.lock.held", "lock", name).record(held, TimeUnit.MILLISECONDS);
+            if (held > distributedLock.leaseMillis()) {
+                log.warn("方法执行时间超过了分布式锁的最长持有时间: {}, {}ms", name, held);
+            }
+            release(key, owner, distributedLock.minLeaseMillis() - held);
+        }
+    }
+
+    private void release(String key, String owner, long remainMillis) {
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key),
+                    owner, String.valueOf(Math.max(remainMillis, 0)));
+        } catch (Exception e) {
+            // 锁会在最长持有时间后自动释放
+            log.error("释放分布式锁失败: {}", key, e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.sky.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 菜单缓存失效组件 按分类id精确删除菜品和套餐的缓存
+ * 在事务中调用时等事务提交后再删除 避免其他请求在提交前把旧数据重新放入缓存
+ */
+@Component
+@Slf4j
+public class MenuCacheInvalidator {
+
+    // 菜品缓存 key: dish_分类id
+    public static final String DISH_CACHE = "dishCache";
+    // 套餐缓存 key: setmealCache::分类id
+    public static final String SETMEAL_CACHE = "setmealCache";
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * 删除分类下的菜品缓存
+     * @param categoryIds
+     */
+    public void evictDish(Long... categoryIds) {
+        evict(DISH_CACHE, Arrays.asList(categoryIds));
+    }
+
+    /**
+     * 删除分类下的菜品缓存
+     * @param categoryIds
+     */
+    public void evictDish(Collection<Long> categoryIds) {
+        evict(DISH_CACHE, categoryIds);
+    }
+
+    /**
+     * 删除分类下的套餐缓存
+     * @param categoryIds
+     */
+    public void evictSetmeal(Long... categoryIds) {
+        evict(SETMEAL_CACHE, Arrays.asList(categoryIds));
+    }
+
+    /**
+     * 删除分类下的套餐缓存
+     * @param categoryIds
+     */
+    public void evictSetmeal(Collection<Long> categoryIds) {
+        evict(SETMEAL_CACHE, categoryIds);
+    }
+
+    private void evict(String cacheName, Collection<Long> categoryIds) {
+        Set<Long> keys = categoryIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        Runnable evictAction = () -> {
+            log.info("删除缓存: {}, 分类id: {}", cacheName, keys);
+            Cache cache = cacheManager.getCache(cacheName);
+            keys.forEach(cache::evict);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictAction.run();
+                }
+            });
+        } else {
+            evictAction.run();
+        }
+    }
+}
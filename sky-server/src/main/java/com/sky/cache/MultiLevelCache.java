@@ -0,0 +1,139 @@
+package com.sky.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 二级缓存 一级为本地的Caffeine缓存 二级为Redis缓存
+ * 修改数据时先修改Redis 再删除本地缓存 并通知其他节点删除各自的本地缓存
+ */
+@Slf4j
+public class MultiLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+    private final Cache redisCache;
+    private final MultiLevelCacheManager cacheManager;
+
+    private final Counter localHit;
+    private final Counter localMiss;
+    private final Counter redisHit;
+    private final Counter redisMiss;
+
+    public MultiLevelCache(String name,
+                           com.github.benmanes.caffeine.cache.Cache<String, Object> localCache,
+                           Cache redisCache,
+                           MultiLevelCacheManager cacheManager,
+                           MeterRegistry meterRegistry) {
+        super(true);
+        this.name = name;
+        this.localCache = localCache;
+        this.redisCache = redisCache;
+        this.cacheManager = cacheManager;
+
+        // 按缓存名称和缓存级别统计命中次数
+        this.localHit = meterRegistry.counter("sky.cache.requests", "cache", name, "level", "local", "result", "hit");
+        this.localMiss = meterRegistry.counter("sky.cache.requests", "cache", name, "level", "local", "result", "miss");
+        this.redisHit = meterRegistry.counter("sky.cache.requests", "cache", name, "level", "redis", "result", "hit");
+        this.redisMiss = meterRegistry.counter("sky.cache.requests", "cache", name, "level", "redis", "result", "miss");
+        meterRegistry.gauge("sky.cache.local.size", Tags.of("cache", name), localCache,
+                com.github.benmanes.caffeine.cache.Cache::estimatedSize);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    /**
+     * 先查本地缓存 未命中再查Redis 查到后放入本地缓存
+     * @param key
+     * @return
+     */
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = String.valueOf(key);
+        Object value = localCache.getIfPresent(localKey);
+        if (value != null) {
+            localHit.increment();
+            return value;
+        }
+        localMiss.increment();
+
+        ValueWrapper wrapper;
+        try {
+            wrapper = redisCache.get(key);
+        } catch (SerializationException e) {
+            // 切换序列化方式或类结构变化后旧数据无法读取 删除后按未命中处理
+            log.warn("缓存数据无法反序列化 删除缓存: {}::{}", name, key, e);
+            redisCache.evict(key);
+            wrapper = null;
+        }
+        if (wrapper == null) {
+            redisMiss.increment();
+            return null;
+        }
+        redisHit.increment();
+        value = toStoreValue(wrapper.get());
+        localCache.put(localKey, value);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        // 两级缓存都未命中 由Redis缓存加载数据并写入Redis
+        T value = redisCache.get(key, valueLoader);
+        localCache.put(String.valueOf(key), toStoreValue(value));
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        localCache.put(String.valueOf(key), toStoreValue(value));
+        cacheManager.publishEvict(name, key);
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        localCache.invalidate(String.valueOf(key));
+        cacheManager.publishEvict(name, key);
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        localCache.invalidateAll();
+        cacheManager.publishEvict(name, null);
+    }
+
+    /**
+     * 收到其他节点的通知时只删除本地缓存
+     * @param key 为null时清空本地缓存
+     */
+    void evictLocal(String key) {
+        if (key == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(key);
+        }
+    }
+}
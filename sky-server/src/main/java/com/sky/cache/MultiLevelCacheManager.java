@@ -0,0 +1,100 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.MultiLevelCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 二级缓存管理器 通过Redis发布订阅在节点之间同步本地缓存的删除
+ * 消息格式: 节点id:缓存名称:key 清空整个缓存时key为*
+ */
+@Slf4j
+public class MultiLevelCacheManager implements CacheManager, MessageListener {
+
+    private static final String ALL_KEYS = "*";
+
+    // 当前节点的id 用于忽略自己发出的通知
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+    private final ConcurrentMap<String, MultiLevelCache> cacheMap = new ConcurrentHashMap<>();
+
+    private final RedisCacheManager redisCacheManager;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MultiLevelCacheProperties multiLevelCacheProperties;
+    private final MeterRegistry meterRegistry;
+
+    public MultiLevelCacheManager(RedisCacheManager redisCacheManager,
+                                  StringRedisTemplate stringRedisTemplate,
+                                  MultiLevelCacheProperties multiLevelCacheProperties,
+                                  MeterRegistry meterRegistry) {
+        this.redisCacheManager = redisCacheManager;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.multiLevelCacheProperties = multiLevelCacheProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return cacheMap.computeIfAbsent(name, cacheName -> new MultiLevelCache(
+                cacheName,
+                Caffeine.newBuilder()
+                        .maximumSize(multiLevelCacheProperties.getLocalMaximumSize())
+                        .expireAfterWrite(Duration.ofSeconds(multiLevelCacheProperties.getLocalExpireSeconds()))
+                        .build(),
+                redisCacheManager.getCache(cacheName),
+                this,
+                meterRegistry));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(cacheMap.keySet());
+    }
+
+    /**
+     * 通知其他节点删除本地缓存
+     * @param cacheName
+     * @param key 为null时清空整个缓存
+     */
+    void publishEvict(String cacheName, Object key) {
+        String message = nodeId + ":" + cacheName + ":" + (key == null ? ALL_KEYS : String.valueOf(key));
+        try {
+            stringRedisTemplate.convertAndSend(multiLevelCacheProperties.getEvictChannel(), message);
+        } catch (Exception e) {
+            // 通知失败时其他节点的本地缓存会在过期后自动失效
+            log.error("发送缓存失效通知失败: {}", message, e);
+        }
+    }
+
+    /**
+     * 收到其他节点的缓存失效通知
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(":", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        MultiLevelCache cache = cacheMap.get(parts[1]);
+        if (cache != null) {
+            log.debug("删除本地缓存: {}, {}", parts[1], parts[2]);
+            cache.evictLocal(ALL_KEYS.equals(parts[2]) ? null : parts[2]);
+        }
+    }
+}
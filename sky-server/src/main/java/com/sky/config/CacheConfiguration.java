@@ -0,0 +1,53 @@
+package com.sky.config;
+
+import com.sky.cache.MultiLevelCacheManager;
+import com.sky.properties.MultiLevelCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 配置类 用于创建本地缓存+Redis的二级缓存管理器
+ */
+@Configuration
+@Slf4j
+public class CacheConfiguration {
+
+    @Bean
+    public MultiLevelCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                               StringRedisTemplate stringRedisTemplate,
+                                               MultiLevelCacheProperties multiLevelCacheProperties,
+                                               MeterRegistry meterRegistry,
+                                               RedisSerializer<Object> redisValueSerializer) {
+        log.info("开始创建二级缓存管理器: {}", multiLevelCacheProperties);
+        // 缓存的value与RedisTemplate使用相同的序列化方式
+        RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer));
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(redisConnectionFactory)
+                .cacheDefaults(defaultConfig)
+                // 菜品缓存沿用原来的key 规则: dish_分类id
+                .withCacheConfiguration("dishCache", defaultConfig.computePrefixWith(cacheName -> "dish_"))
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        return new MultiLevelCacheManager(redisCacheManager, stringRedisTemplate, multiLevelCacheProperties, meterRegistry);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheEvictListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                     MultiLevelCacheManager cacheManager,
+                                                                     MultiLevelCacheProperties multiLevelCacheProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(multiLevelCacheProperties.getEvictChannel()));
+        return container;
+    }
+}
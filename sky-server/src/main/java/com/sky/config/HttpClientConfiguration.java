@@ -0,0 +1,91 @@
+package com.sky.config;
+
+import com.sky.properties.HttpClientProperties;
+import com.sky.utils.HttpClientUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配置类 用于创建带连接池的HttpClient对象
+ */
+@Configuration
+@Slf4j
+public class HttpClientConfiguration {
+
+    @Bean
+    public PoolingHttpClientConnectionManager httpClientConnectionManager(HttpClientProperties httpClientProperties,
+                                                                          MeterRegistry meterRegistry) {
+        log.info("开始创建Http连接池: {}", httpClientProperties);
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(httpClientProperties.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(httpClientProperties.getDefaultMaxPerRoute());
+        httpClientProperties.getMaxPerRoute().forEach((host, max) ->
+                connectionManager.setMaxPerRoute(route(host), max));
+        connectionManager.setValidateAfterInactivity(httpClientProperties.getValidateAfterInactivity());
+
+        // 连接池指标
+        meterRegistry.gauge("sky.http.client.pool.leased", Tags.of(), connectionManager, cm -> cm.getTotalStats().getLeased());
+        meterRegistry.gauge("sky.http.client.pool.available", Tags.of(), connectionManager, cm -> cm.getTotalStats().getAvailable());
+        meterRegistry.gauge("sky.http.client.pool.pending", Tags.of(), connectionManager, cm -> cm.getTotalStats().getPending());
+        meterRegistry.gauge("sky.http.client.pool.max", Tags.of(), connectionManager, cm -> cm.getTotalStats().getMax());
+        return connectionManager;
+    }
+
+    /**
+     * 按请求时路由规划的方式构造路由 端口和是否https与实际请求的路由一致 单独配置的连接数上限才能生效
+     * @param host 例如 https://api.map.baidu.com
+     * @return
+     */
+    private static HttpRoute route(String host) {
+        HttpHost target = HttpHost.create(host);
+        int port;
+        try {
+            port = DefaultSchemePortResolver.INSTANCE.resolve(target);
+        } catch (UnsupportedSchemeException e) {
+            throw new IllegalArgumentException("不支持的协议: " + host, e);
+        }
+        return new HttpRoute(new HttpHost(target.getHostName(), port, target.getSchemeName()), null,
+                "https".equalsIgnoreCase(target.getSchemeName()));
+    }
+
+    @Bean
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpClientConnectionManager,
+                                          HttpClientProperties httpClientProperties) {
+        log.info("开始创建HttpClient对象...");
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(httpClientProperties.getConnectTimeout())
+                .setConnectionRequestTimeout(httpClientProperties.getConnectionRequestTimeout())
+                .setSocketTimeout(httpClientProperties.getSocketTimeout())
+                .build();
+        long defaultKeepAlive = TimeUnit.SECONDS.toMillis(httpClientProperties.getKeepAliveSeconds());
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(httpClientConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // 优先使用服务端返回的Keep-Alive时间
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? keepAlive : defaultKeepAlive;
+                })
+                // 后台线程定时关闭过期和空闲的连接
+                .evictExpiredConnections()
+                .evictIdleConnections(httpClientProperties.getMaxIdleSeconds(), TimeUnit.SECONDS)
+                .build();
+        HttpClientUtil.setHttpClient(httpClient);
+        return httpClient;
+    }
+}
@@ -0,0 +1,28 @@
+package com.sky.config;
+
+import com.sky.properties.IdGeneratorProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 配置类 用于创建生成订单号、退款单号的id生成器
+ */
+@Configuration
+@Slf4j
+public class IdGeneratorConfiguration {
+
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator(IdGeneratorProperties idGeneratorProperties) {
+        log.info("开始创建id生成器: {}", idGeneratorProperties);
+        // 各节点使用相同的默认值时会生成重复的订单号 必须为每个节点单独配置
+        if (idGeneratorProperties.getWorkerId() == null) {
+            throw new IllegalStateException("未配置节点id sky.id-generator.worker-id 部署多个节点时每个节点必须不同");
+        }
+        return new SnowflakeIdGenerator(
+                idGeneratorProperties.getWorkerId(),
+                idGeneratorProperties.getEpoch(),
+                idGeneratorProperties.getMaxBackwardMillis());
+    }
+}
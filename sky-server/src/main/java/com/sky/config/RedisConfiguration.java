@@ -1,12 +1,25 @@
 package com.sky.config;
 
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sky.json.JacksonObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.support.NullValue;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
 @Configuration
 @Slf4j
 public class RedisConfiguration {
@@ -17,7 +30,8 @@ public class RedisConfiguration {
 
     // RedisTemplate Redis模板对象
     @Bean
-    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                       RedisSerializer<Object> redisValueSerializer) {
 
         log.info("开始创建Redis模板对象");
         RedisTemplate redisTemplate = new RedisTemplate<>();
@@ -27,9 +41,53 @@ public class RedisConfiguration {
 
         // 设置redis key的序列化器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+
+        // 设置redis value的序列化器
+        redisTemplate.setValueSerializer(redisValueSerializer);
+        redisTemplate.setHashValueSerializer(redisValueSerializer);
 
         return redisTemplate;
     }
 
+    /**
+     * Redis value的序列化器 RedisTemplate和缓存管理器共用
+     * jdk: JDK序列化 json: 基于JacksonObjectMapper的json smile: 与json相同规则的Smile二进制格式
+     * @param valueSerializer
+     * @return
+     */
+    @Bean
+    public RedisSerializer<Object> redisValueSerializer(@Value("${sky.redis.value-serializer:jdk}") String valueSerializer) {
+        log.info("Redis value序列化方式: {}", valueSerializer);
+        switch (valueSerializer) {
+            case "json":
+                return new GenericJackson2JsonRedisSerializer(typedObjectMapper(new JacksonObjectMapper()));
+            case "smile":
+                return new GenericJackson2JsonRedisSerializer(typedObjectMapper(new JacksonObjectMapper(new SmileFactory())));
+            case "jdk":
+                return new JdkSerializationRedisSerializer(getClass().getClassLoader());
+            default:
+                throw new IllegalArgumentException("不支持的Redis value序列化方式: " + valueSerializer);
+        }
+    }
+
+    /**
+     * 在数据中记录类型信息 反序列化时还原为原来的类型 只允许项目中的类型和缓存中实际用到的jdk类型
+     * 传入ObjectMapper创建序列化器时不会注册空值的序列化器 需要自己注册 否则缓存的空值读出来是一个Map
+     * @param objectMapper
+     * @return
+     */
+    private ObjectMapper typedObjectMapper(ObjectMapper objectMapper) {
+        BasicPolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.sky.")
+                .allowIfSubType(ArrayList.class) // 缓存的菜品、套餐列表
+                .allowIfSubType(BigDecimal.class) // 菜品、套餐的价格
+                .allowIfSubType(Integer.class) // 店铺营业状态
+                .allowIfSubType(NullValue.class) // 缓存的空值
+                .build();
+        objectMapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        GenericJackson2JsonRedisSerializer.registerNullValueSerializer(objectMapper, JsonTypeInfo.Id.CLASS.getDefaultPropertyName());
+        return objectMapper;
+    }
 
 }
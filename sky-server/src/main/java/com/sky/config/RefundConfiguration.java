@@ -0,0 +1,29 @@
+package com.sky.config;
+
+import com.sky.properties.RefundProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 配置类 用于创建调用微信退款接口的线程池
+ */
+@Configuration
+@Slf4j
+public class RefundConfiguration {
+
+    @Bean
+    public ThreadPoolTaskExecutor refundExecutor(RefundProperties refundProperties) {
+        log.info("开始创建退款线程池: {}", refundProperties);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(refundProperties.getCorePoolSize());
+        executor.setMaxPoolSize(refundProperties.getMaxPoolSize());
+        // 队列满了之后放弃本次处理 退款记录仍在表中 由定时任务重新处理
+        executor.setQueueCapacity(refundProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("refund-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
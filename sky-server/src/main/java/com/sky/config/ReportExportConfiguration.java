@@ -0,0 +1,29 @@
+package com.sky.config;
+
+import com.sky.properties.ReportExportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 配置类 用于创建报表导出线程池 导出任务不占用Tomcat的工作线程
+ */
+@Configuration
+@Slf4j
+public class ReportExportConfiguration {
+
+    @Bean
+    public ThreadPoolTaskExecutor reportExportExecutor(ReportExportProperties reportExportProperties) {
+        log.info("开始创建报表导出线程池: {}", reportExportProperties);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(reportExportProperties.getCorePoolSize());
+        executor.setMaxPoolSize(reportExportProperties.getMaxPoolSize());
+        // 队列满了之后拒绝新的导出任务 由调用方提示稍后再试
+        executor.setQueueCapacity(reportExportProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("report-export-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+}
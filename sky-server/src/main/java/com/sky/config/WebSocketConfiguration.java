@@ -1,13 +1,21 @@
 package com.sky.config;
 
+import com.sky.properties.WebSocketProperties;
+import com.sky.websocket.WebSocketBroadcaster;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.server.standard.ServerEndpointExporter;
 
 /**
  * WebSocket配置类，用于注册WebSocket的Bean
  */
 @Configuration
+@Slf4j
 public class WebSocketConfiguration {
 
     @Bean
@@ -15,4 +23,31 @@ public class WebSocketConfiguration {
         return new ServerEndpointExporter();
     }
 
+    /**
+     * WebSocket消息发送线程池 推送消息不占用业务请求的线程
+     *
+     * @param webSocketProperties
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor webSocketExecutor(WebSocketProperties webSocketProperties) {
+        log.info("开始创建WebSocket消息发送线程池: {}", webSocketProperties);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(webSocketProperties.getCorePoolSize());
+        executor.setMaxPoolSize(webSocketProperties.getMaxPoolSize());
+        executor.setQueueCapacity(webSocketProperties.getExecutorQueueCapacity());
+        executor.setThreadNamePrefix("websocket-send-");
+        return executor;
+    }
+
+    @Bean
+    public RedisMessageListenerContainer webSocketBroadcastListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                             WebSocketBroadcaster webSocketBroadcaster,
+                                                                             WebSocketProperties webSocketProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(webSocketBroadcaster, new ChannelTopic(webSocketProperties.getBroadcastChannel()));
+        return container;
+    }
+
 }
@@ -11,11 +11,9 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Set;
 
 @RestController
 @RequestMapping("/admin/dish")
@@ -24,8 +22,6 @@ import java.util.Set;
 public class DishController {
     @Autowired
     private DishService dishService;
-    @Autowired
-    private RedisTemplate redisTemplate;
 
     /**
      * 新增菜品
@@ -37,9 +33,6 @@ public class DishController {
     public Result save(@RequestBody DishDTO dishDto) {
         log.info("新增菜品: {}", dishDto);
         dishService.saveWithFlavor(dishDto);
-        // 清理Redis中的缓存数据
-        String key = "dish_" + dishDto.getId();
-        cleanCache(key);
         return Result.success();
     }
 
@@ -62,10 +55,6 @@ public class DishController {
     public Result delete(@RequestParam List<Long> ids) {
         log.info("删除菜品ids: {}", ids);
         dishService.deteteBatch(ids);
-
-        // 清理缓存数据
-        cleanCache("dish_*");
-
         return Result.success();
     }
 
@@ -95,10 +84,6 @@ public class DishController {
     public Result update(@RequestBody DishDTO dishDto) {
         log.info("修改菜品: {}", dishDto);
         dishService.updateWitnFlavor(dishDto);
-
-        // 清理缓存数据
-        cleanCache("dish_*");
-
         return Result.success();
     }
 
@@ -123,19 +108,6 @@ public class DishController {
     @PostMapping("/status/{status}")
     public Result startOrStop(@PathVariable Integer status, Long id) {
         dishService.startOrStop(status, id);
-
-        // 清理缓存数据
-        cleanCache("dish_*");
-
         return Result.success();
     }
-
-    /**
-     * 将所有的菜品缓存数据清理掉 所有以 dish_分类id 开头的key
-     * @param patten
-     */
-    private void cleanCache(String patten) {
-        Set keys = redisTemplate.keys(patten);
-        redisTemplate.delete(keys);
-    }
 }
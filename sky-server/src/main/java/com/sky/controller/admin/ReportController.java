@@ -1,9 +1,12 @@
 package com.sky.controller.admin;
 
+import com.sky.dto.ReportExportDTO;
 import com.sky.result.Result;
 import com.sky.service.OrderService;
+import com.sky.service.ReportExportService;
 import com.sky.service.ReportService;
 import com.sky.vo.OrderReportVO;
+import com.sky.vo.ReportExportJobVO;
 import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
@@ -13,6 +16,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -30,6 +36,8 @@ public class ReportController {
 
     @Autowired
     private ReportService reportService;
+    @Autowired
+    private ReportExportService reportExportService;
 
 
     /**
@@ -96,12 +104,55 @@ public class ReportController {
 
 
     /**
-     * 到处运营数据报表
+     * 到处运营数据报表 未指定时间时导出最近30天的数据
+     * @param begin
+     * @param end
      * @param response
      */
     @GetMapping("/export")
     @ApiOperation("到处运营数据报表")
-    public void export(HttpServletResponse response){
-        reportService.exportBusinessData(response);
+    public void export(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+            HttpServletResponse response){
+        log.info("导出运营数据报表: {}, {}", begin, end);
+        reportService.exportBusinessData(begin, end, response);
+    }
+
+    /**
+     * 提交运营数据报表导出任务
+     * @param reportExportDTO
+     * @return
+     */
+    @PostMapping("/export/jobs")
+    @ApiOperation("提交报表导出任务")
+    public Result<ReportExportJobVO> submitExportJob(@RequestBody ReportExportDTO reportExportDTO){
+        log.info("提交报表导出任务: {}", reportExportDTO);
+        ReportExportJobVO reportExportJobVO = reportExportService.submit(reportExportDTO);
+        return Result.success(reportExportJobVO);
+    }
+
+    /**
+     * 查询报表导出任务状态
+     * @param jobId
+     * @return
+     */
+    @GetMapping("/export/jobs/{jobId}")
+    @ApiOperation("查询报表导出任务")
+    public Result<ReportExportJobVO> getExportJob(@PathVariable String jobId){
+        ReportExportJobVO reportExportJobVO = reportExportService.getJob(jobId);
+        return Result.success(reportExportJobVO);
+    }
+
+    /**
+     * 下载导出完成的报表
+     * @param jobId
+     * @param response
+     */
+    @GetMapping("/export/jobs/{jobId}/file")
+    @ApiOperation("下载导出的报表")
+    public void downloadExportFile(@PathVariable String jobId, HttpServletResponse response){
+        log.info("下载导出的报表: {}", jobId);
+        reportExportService.download(jobId, response);
     }
 }
@@ -2,11 +2,11 @@ package com.sky.controller.admin;
 
 
 import com.sky.result.Result;
+import com.sky.service.ShopService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
 @RestController("adminShopController")
@@ -15,10 +15,8 @@ import org.springframework.web.bind.annotation.*;
 @Slf4j
 public class ShopController {
 
-    private static final String key = "SHOP_STATUS";
-
     @Autowired
-    private RedisTemplate redisTemplate;
+    private ShopService shopService;
 
 
     /**
@@ -31,7 +29,7 @@ public class ShopController {
     public Result setStatus(@PathVariable Integer status){
 
         log.info("设置店铺的营业状态为: {}",status == 1 ? "营业中" : "打烊中");
-        redisTemplate.opsForValue().set(key, status);
+        shopService.setStatus(status);
         return Result.success();
     }
 
@@ -43,7 +41,7 @@ public class ShopController {
     @GetMapping("/status")
     @ApiOperation("获取店铺的营业状态")
     public Result<Integer> getStatus(){
-        Integer status = (Integer) redisTemplate.opsForValue().get(key);
+        Integer status = shopService.getStatus();
         log.info("获取到店铺的营业状态为: {}",status == 1 ? "营业中" : "打烊中");
         return Result.success(status);
     }
@@ -9,7 +9,8 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -25,7 +26,7 @@ public class DishController {
     private DishService dishService;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private CacheManager cacheManager;
 
     /**
      * 根据分类id查询菜品
@@ -36,24 +37,14 @@ public class DishController {
     @GetMapping("/list")
     @ApiOperation("根据分类id查询菜品")
     public Result<List<DishVO>> list(Long categoryId) {
-
-        // 构造Redis当中的key 构造规则: dish_分类id
-        String key = "dish_" + categoryId;
-
-        // 查询Redis中是否存在菜品数据
-        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key); // 放进去什么类型取出来就是什么类型
-        if (list != null && list.size() > 0) {
-            // 如果存在直接返回菜品数据
-            return Result.success(list);
-        }
-
         Dish dish = new Dish();
         dish.setCategoryId(categoryId);
         dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
 
-        // 如果不存在 查询数据库 并将查询到的数据缓存到Redis中
-        list = dishService.listWithFlavor(dish);
-        redisTemplate.opsForValue().set(key, list);
+        // 依次查询本地缓存和Redis 都不存在时查询数据库 并将查询到的数据缓存起来
+        // Redis当中的key 构造规则: dish_分类id
+        Cache cache = cacheManager.getCache("dishCache");
+        List<DishVO> list = cache.get(categoryId, () -> dishService.listWithFlavor(dish));
 
         return Result.success(list);
     }
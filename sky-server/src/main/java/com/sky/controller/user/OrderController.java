@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.dto.OrdersPaymentDTO;
 import com.sky.dto.OrdersSubmitDTO;
 import com.sky.result.PageResult;
@@ -53,16 +54,15 @@ public class OrderController {
 
     /**
      * 历史订单查询
-     * @param page
-     * @param pageSize
-     * @param status   订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+     * @param ordersPageQueryDTO page pageSize status(订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消)
+     *                           以及可选的游标cursorTime cursorId 和skipCount
      * @return
      */
     @GetMapping("/historyOrders")
     @ApiOperation("历史订单查询")
-    public Result<PageResult> page(int page, int pageSize, Integer status) {
-        log.info("历史订单查询, page:{}, pageSize:{}, status:{}", page, pageSize, status);
-        PageResult pageResult = orderService.pageQuery4User(page, pageSize, status);
+    public Result<PageResult> page(OrdersPageQueryDTO ordersPageQueryDTO) {
+        log.info("历史订单查询: {}", ordersPageQueryDTO);
+        PageResult pageResult = orderService.pageQuery4User(ordersPageQueryDTO);
         return Result.success(pageResult);
     }
 
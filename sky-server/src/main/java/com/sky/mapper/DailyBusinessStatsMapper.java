@@ -0,0 +1,39 @@
+package com.sky.mapper;
+
+import com.sky.entity.DailyBusinessStats;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface DailyBusinessStatsMapper {
+
+    /**
+     * 查询日期区间内已汇总的营业数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select * from daily_business_stats where stat_date between #{begin} and #{end} order by stat_date")
+    List<DailyBusinessStats> listByDate(LocalDate begin, LocalDate end);
+
+    /**
+     * 批量插入汇总数据 日期已存在时覆盖
+     * @param statsList
+     */
+    void insertOrUpdateBatch(List<DailyBusinessStats> statsList);
+
+    /**
+     * 增量修改某天的有效订单数和营业额
+     * @param statDate
+     * @param validOrderCount 有效订单数的变化量
+     * @param turnover 营业额的变化量
+     */
+    @Update("update daily_business_stats set valid_order_count = valid_order_count + #{validOrderCount}, " +
+            "turnover = turnover + #{turnover}, update_time = now() where stat_date = #{statDate}")
+    void increaseValidOrder(LocalDate statDate, Integer validOrderCount, BigDecimal turnover);
+}
@@ -31,6 +31,13 @@ public interface DishFlavorMapper {
     @Select("select * from dish_flavor where dish_id = #{id}")
     List<DishFlavor> getByDishId(Long id);
 
+    /**
+     * 根据菜品id批量查询对应的口味数据
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> getByDishIds(List<Long> dishIds);
+
 
     /**
      * 根据菜品id删除对应的口味
@@ -1,11 +1,13 @@
 package com.sky.mapper;
 
 import com.github.pagehelper.Page;
+import com.sky.dto.DailyOrderStatDTO;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.text.DecimalFormat;
 import java.time.LocalDate;
@@ -25,8 +27,21 @@ public interface OrderMapper {
      * 根据订单号查询订单
      * @param orderNumber
      */
-    @Select("select * from orders where number = #{orderNumber} and user_id = #{userId}")
-    Orders getByNumber(String orderNumber, Long userId);
+    @Select("select * from orders where number = #{orderNumber}")
+    Orders getByNumber(String orderNumber);
+
+    /**
+     * 订单处于指定状态时修改订单状态、支付状态和结账时间 并发修改时只有一个能成功
+     * @param id
+     * @param fromStatus 修改前的订单状态
+     * @param status
+     * @param payStatus
+     * @param checkoutTime
+     * @return 修改的行数
+     */
+    @Update("update orders set status = #{status}, pay_status = #{payStatus}, checkout_time = #{checkoutTime} " +
+            "where id = #{id} and status = #{fromStatus}")
+    int updatePayStatus(Long id, Integer fromStatus, Integer status, Integer payStatus, LocalDateTime checkoutTime);
 
     /**
      * 修改订单信息
@@ -66,6 +81,37 @@ public interface OrderMapper {
     @Select("select * from orders where status = #{status} and order_time < #{orderTime}")
     List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime);
 
+    /**
+     * 批量修改指定状态且下单时间早于指定时间的订单 每次最多修改limit条 缩短锁定时间
+     * @param orders 修改后的订单状态、取消原因、取消时间、送达时间
+     * @param status 修改前的订单状态
+     * @param orderTime
+     * @param limit
+     * @return 修改的行数
+     */
+    int updateByStatusAndOrderTimeLT(Orders orders, Integer status, LocalDateTime orderTime, int limit);
+
+    /**
+     * 批量修改处于指定状态的订单
+     * @param orders 修改后的订单状态、取消原因、取消时间、送达时间
+     * @param ids
+     * @param status 修改前的订单状态
+     * @return 修改的行数
+     */
+    int updateByIdsAndStatus(Orders orders, List<Long> ids, Integer status);
+
+    /**
+     * 查询并锁定指定状态且下单时间早于指定时间的订单 需要在事务中调用
+     * 按下单时间和id排序 与idx_orders_status_time索引顺序一致 每批锁定最早的订单 不需要额外排序
+     * @param status
+     * @param orderTime
+     * @param limit
+     * @return 订单的id、状态、下单时间和金额
+     */
+    @Select("select id, status, order_time, amount from orders where status = #{status} and order_time < #{orderTime} " +
+            "order by order_time, id limit #{limit} for update")
+    List<Orders> lockByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime, int limit);
+
     /**
      * 统计某天订单状态为已完成的营业额数据
      * @param map
@@ -80,6 +126,13 @@ public interface OrderMapper {
      */
     Integer countByMap(Map map);
 
+    /**
+     * 按下单日期分组统计订单数、有效订单数和营业额
+     * @param map begin、end 为时间区间，status 为有效订单的状态
+     * @return
+     */
+    List<DailyOrderStatDTO> countAndSumGroupByDate(Map map);
+
     /**
      * 动态查询查询销量排名top10
      * @param begin
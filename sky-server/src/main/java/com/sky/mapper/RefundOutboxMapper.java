@@ -0,0 +1,48 @@
+package com.sky.mapper;
+
+import com.sky.entity.RefundOutbox;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface RefundOutboxMapper {
+
+    /**
+     * 插入退款记录 退款单号已存在时忽略
+     * @param refundOutbox
+     * @return 插入的行数
+     */
+    int insert(RefundOutbox refundOutbox);
+
+    /**
+     * 查询到达处理时间的待退款记录
+     * @param now
+     * @param limit
+     * @return
+     */
+    @Select("select * from refund_outbox where status = 0 and next_retry_time <= #{now} order by next_retry_time limit #{limit}")
+    List<RefundOutbox> listDue(LocalDateTime now, int limit);
+
+    /**
+     * 领取退款任务 下次处理时间未被其他线程修改时才能领取成功
+     * @param id
+     * @param nextRetryTime 查询到的下次处理时间
+     * @param leaseUntil 锁定到的时间
+     * @return 修改的行数 为1时领取成功
+     */
+    @Update("update refund_outbox set next_retry_time = #{leaseUntil}, update_time = now() " +
+            "where id = #{id} and status = 0 and next_retry_time = #{nextRetryTime}")
+    int claim(Long id, LocalDateTime nextRetryTime, LocalDateTime leaseUntil);
+
+    /**
+     * 修改退款状态、重试次数、下次处理时间和失败原因
+     * @param refundOutbox
+     */
+    @Update("update refund_outbox set status = #{status}, retry_count = #{retryCount}, next_retry_time = #{nextRetryTime}, " +
+            "last_error = #{lastError}, update_time = #{updateTime} where id = #{id}")
+    void update(RefundOutbox refundOutbox);
+}
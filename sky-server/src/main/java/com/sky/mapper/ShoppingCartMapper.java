@@ -51,4 +51,34 @@ public interface ShoppingCartMapper {
      * @param shoppingCartList
      */
     void insertBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 添加购物车 同一商品已存在时数量加1 商品信息从菜品表或套餐表中查询
+     * @param shoppingCart
+     */
+    void insertOrIncrease(ShoppingCart shoppingCart);
+
+    /**
+     * 批量添加购物车 同一商品已存在时累加数量
+     * @param shoppingCartList
+     */
+    void insertOrIncreaseBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 商品数量大于1时减1
+     * @param shoppingCart
+     * @return 修改的行数 为0时说明商品数量为1或商品不存在
+     */
+    @Update("update shopping_cart set number = number - 1 where user_id = #{userId} and dish_id <=> #{dishId} " +
+            "and setmeal_id <=> #{setmealId} and dish_flavor <=> #{dishFlavor} and number > 1")
+    int decreaseNumber(ShoppingCart shoppingCart);
+
+    /**
+     * 删除数量为1的商品
+     * @param shoppingCart
+     * @return 删除的行数
+     */
+    @Delete("delete from shopping_cart where user_id = #{userId} and dish_id <=> #{dishId} " +
+            "and setmeal_id <=> #{setmealId} and dish_flavor <=> #{dishFlavor} and number <= 1")
+    int deleteLastOne(ShoppingCart shoppingCart);
 }
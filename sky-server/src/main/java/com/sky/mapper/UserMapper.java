@@ -1,10 +1,12 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyUserStatDTO;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Mapper
@@ -37,4 +39,11 @@ public interface UserMapper {
      * @return
      */
     Integer countByMap(Map map);
+
+    /**
+     * 按注册日期分组统计某个时间范围内的新增用户数
+     * @param map
+     * @return
+     */
+    List<DailyUserStatDTO> countGroupByDate(Map map);
 }
@@ -0,0 +1,60 @@
+package com.sky.service;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.vo.BusinessDataVO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 每日营业数据汇总相关接口服务
+ */
+public interface DailyBusinessStatsService {
+
+    /**
+     * 查询日期区间内每天的营业数据 已结束的日期读取汇总表 当天及汇总表中缺失的日期实时统计
+     * @param begin
+     * @param end
+     * @return 按日期升序排列 每天一条数据
+     */
+    List<DailyBusinessStats> listByDate(LocalDate begin, LocalDate end);
+
+    /**
+     * 根据订单表和用户表重新汇总日期区间内已结束日期的营业数据
+     * @param begin
+     * @param end
+     */
+    void refresh(LocalDate begin, LocalDate end);
+
+    /**
+     * 订单状态变化时增量修改已结束日期的汇总数据
+     * @param ordersDB 修改前的订单
+     * @param status 修改后的订单状态
+     */
+    void orderStatusChanged(Orders ordersDB, Integer status);
+
+    /**
+     * 批量修改订单状态时增量修改已结束日期的汇总数据 每个日期只修改一次
+     * @param ordersDBList 修改前的订单
+     * @param status 修改后的订单状态
+     */
+    void ordersStatusChanged(List<Orders> ordersDBList, Integer status);
+
+    /**
+     * 累加多天的营业数据并计算订单完成率和平均客单价
+     * @param statsList
+     * @return
+     */
+    BusinessDataVO sumBusinessData(List<DailyBusinessStats> statsList);
+
+    /**
+     * 根据营业额、订单数和新增用户数计算营业数据
+     * @param turnover
+     * @param totalOrderCount
+     * @param validOrderCount
+     * @param newUsers
+     * @return
+     */
+    BusinessDataVO buildBusinessData(Double turnover, Integer totalOrderCount, Integer validOrderCount, Integer newUsers);
+}
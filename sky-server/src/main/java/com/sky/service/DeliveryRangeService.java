@@ -0,0 +1,13 @@
+package com.sky.service;
+
+/**
+ * 配送范围相关接口服务
+ */
+public interface DeliveryRangeService {
+
+    /**
+     * 检查收货地址是否超出配送范围 超出时抛出业务异常
+     * @param address 收货地址
+     */
+    void checkOutOfRange(String address);
+}
@@ -20,19 +20,18 @@ public interface OrderService {
     OrderPaymentVO payment(OrdersPaymentDTO ordersPaymentDTO) throws Exception;
 
     /**
-     * 支付成功，修改订单状态
+     * 支付成功，修改订单状态 同一微信支付交易号的重复回调只处理一次
      * @param outTradeNo
+     * @param transactionId
      */
-    void paySuccess(String outTradeNo);
+    void paySuccess(String outTradeNo, String transactionId);
 
     /**
      * 历史订单查询
-     * @param page
-     * @param pageSize
-     * @param status
+     * @param ordersPageQueryDTO
      * @return
      */
-    PageResult pageQuery4User(int page, int pageSize, Integer status);
+    PageResult pageQuery4User(OrdersPageQueryDTO ordersPageQueryDTO);
 
     /**
      * 根据订单id查询订单详情
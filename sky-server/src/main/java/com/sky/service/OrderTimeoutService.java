@@ -0,0 +1,27 @@
+package com.sky.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * 未支付订单超时取消相关接口服务 使用Redis有序集合作为延迟队列
+ */
+public interface OrderTimeoutService {
+
+    /**
+     * 下单后登记订单的超时时间 到期未支付时自动取消
+     * @param orderId
+     * @param orderTime 下单时间
+     */
+    void schedule(Long orderId, LocalDateTime orderTime);
+
+    /**
+     * 订单已支付或已取消时从延迟队列中移除
+     * @param orderId
+     */
+    void remove(Long orderId);
+
+    /**
+     * 取消延迟队列中已到期的订单
+     */
+    void processDue();
+}
@@ -0,0 +1,20 @@
+package com.sky.service;
+
+import com.sky.entity.Orders;
+
+/**
+ * 退款相关接口服务
+ */
+public interface RefundService {
+
+    /**
+     * 为已支付的订单登记退款 需要在修改订单状态的事务中调用 事务提交后再调用微信退款接口
+     * @param ordersDB
+     */
+    void createRefund(Orders ordersDB);
+
+    /**
+     * 处理到达处理时间的待退款记录
+     */
+    void processDueRefunds();
+}
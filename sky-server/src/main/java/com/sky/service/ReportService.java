@@ -7,6 +7,8 @@ import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 
 /**
@@ -45,7 +47,25 @@ public interface ReportService {
 
     /**
      * 到处运营数据报表
+     * @param begin
+     * @param end
      * @param response
      */
-    void exportBusinessData(HttpServletResponse response);
+    void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response);
+
+    /**
+     * 校验导出运营数据报表的日期区间 同步导出和异步导出共用
+     * @param begin
+     * @param end
+     */
+    void checkExportDateRange(LocalDate begin, LocalDate end);
+
+    /**
+     * 将运营数据报表写入输出流
+     * @param begin
+     * @param end
+     * @param out
+     * @throws IOException
+     */
+    void writeBusinessData(LocalDate begin, LocalDate end, OutputStream out) throws IOException;
 }
@@ -0,0 +1,19 @@
+package com.sky.service;
+
+/**
+ * 店铺营业状态相关接口服务
+ */
+public interface ShopService {
+
+    /**
+     * 设置店铺的营业状态
+     * @param status 1营业中 0打烊中
+     */
+    void setStatus(Integer status);
+
+    /**
+     * 获取店铺的营业状态
+     * @return
+     */
+    Integer getStatus();
+}
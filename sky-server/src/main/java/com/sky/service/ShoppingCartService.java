@@ -28,4 +28,15 @@ public interface ShoppingCartService {
      * @param shoppingCartDTO
      */
     void decrease(ShoppingCartDTO shoppingCartDTO);
+
+    /**
+     * 批量添加购物车 已存在的商品累加数量
+     * @param shoppingCartList
+     */
+    void addShoppingCartItems(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 将修改过的购物车写回数据库
+     */
+    void flushDirtyCarts();
 }
@@ -0,0 +1,244 @@
+package com.sky.service.impl;
+
+import com.sky.dto.DailyOrderStatDTO;
+import com.sky.dto.DailyUserStatDTO;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.DailyBusinessStatsService;
+import com.sky.vo.BusinessDataVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class DailyBusinessStatsServiceImpl implements DailyBusinessStatsService {
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private UserMapper userMapper;
+
+    /**
+     * 查询日期区间内每天的营业数据
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public List<DailyBusinessStats> listByDate(LocalDate begin, LocalDate end) {
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, DailyBusinessStats> statsMap = new HashMap<>();
+        // 已结束的日期从汇总表读取
+        if (begin.isBefore(today)) {
+            LocalDate closedEnd = end.isBefore(today) ? end : today.minusDays(1);
+            dailyBusinessStatsMapper.listByDate(begin, closedEnd)
+                    .forEach(stats -> statsMap.put(stats.getStatDate(), stats));
+        }
+
+        // 当天以及汇总表中还没有的日期 实时统计
+        List<LocalDate> dateList = getDateList(begin, end);
+        List<LocalDate> missingDates = dateList.stream()
+                .filter(date -> !statsMap.containsKey(date))
+                .collect(Collectors.toList());
+        if (!missingDates.isEmpty()) {
+            Map<LocalDate, DailyBusinessStats> liveMap = calculate(missingDates.get(0), missingDates.get(missingDates.size() - 1));
+            missingDates.forEach(date -> statsMap.put(date, liveMap.get(date)));
+        }
+
+        return dateList.stream().map(statsMap::get).collect(Collectors.toList());
+    }
+
+    /**
+     * 重新汇总日期区间内已结束日期的营业数据
+     *
+     * @param begin
+     * @param end
+     */
+    @Override
+    public void refresh(LocalDate begin, LocalDate end) {
+        // 当天的数据还在变化 只汇总到昨天
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        if (end.isAfter(yesterday)) {
+            end = yesterday;
+        }
+        if (begin.isAfter(end)) {
+            return;
+        }
+        List<DailyBusinessStats> statsList = new ArrayList<>(calculate(begin, end).values());
+        LocalDateTime now = LocalDateTime.now();
+        statsList.forEach(stats -> stats.setUpdateTime(now));
+        dailyBusinessStatsMapper.insertOrUpdateBatch(statsList);
+        log.info("汇总营业数据完成: {} 至 {}, 共{}天", begin, end, statsList.size());
+    }
+
+    /**
+     * 订单状态变化时增量修改已结束日期的汇总数据 只有进入或离开已完成状态才会影响汇总数据
+     *
+     * @param ordersDB
+     * @param status
+     */
+    @Override
+    public void orderStatusChanged(Orders ordersDB, Integer status) {
+        LocalDate statDate = ordersDB.getOrderTime().toLocalDate();
+        // 当天的数据实时统计 不需要维护
+        if (!statDate.isBefore(LocalDate.now())) {
+            return;
+        }
+        boolean wasValid = Orders.COMPLETED.equals(ordersDB.getStatus());
+        boolean isValid = Orders.COMPLETED.equals(status);
+        if (wasValid == isValid) {
+            return;
+        }
+        BigDecimal amount = ordersDB.getAmount() == null ? BigDecimal.ZERO : ordersDB.getAmount();
+        if (isValid) {
+            dailyBusinessStatsMapper.increaseValidOrder(statDate, 1, amount);
+        } else {
+            dailyBusinessStatsMapper.increaseValidOrder(statDate, -1, amount.negate());
+        }
+    }
+
+    /**
+     * 批量修改订单状态时增量修改已结束日期的汇总数据 按日期合并后每个日期执行一次update
+     *
+     * @param ordersDBList
+     * @param status
+     */
+    @Override
+    public void ordersStatusChanged(List<Orders> ordersDBList, Integer status) {
+        LocalDate today = LocalDate.now();
+        boolean isValid = Orders.COMPLETED.equals(status);
+        Map<LocalDate, List<Orders>> changedMap = ordersDBList.stream()
+                .filter(orders -> orders.getOrderTime().toLocalDate().isBefore(today))
+                .filter(orders -> Orders.COMPLETED.equals(orders.getStatus()) != isValid)
+                .collect(Collectors.groupingBy(orders -> orders.getOrderTime().toLocalDate()));
+        changedMap.forEach((statDate, ordersList) -> {
+            BigDecimal amount = ordersList.stream()
+                    .map(orders -> orders.getAmount() == null ? BigDecimal.ZERO : orders.getAmount())
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            if (isValid) {
+                dailyBusinessStatsMapper.increaseValidOrder(statDate, ordersList.size(), amount);
+            } else {
+                dailyBusinessStatsMapper.increaseValidOrder(statDate, -ordersList.size(), amount.negate());
+            }
+        });
+    }
+
+    /**
+     * 根据订单表和用户表实时统计日期区间内每天的营业数据 没有数据的日期补0
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate, DailyBusinessStats> calculate(LocalDate begin, LocalDate end) {
+        Map map = new HashMap();
+        map.put("begin", LocalDateTime.of(begin, LocalTime.MIN));
+        map.put("end", LocalDateTime.of(end, LocalTime.MAX));
+        map.put("status", Orders.COMPLETED);
+        Map<LocalDate, DailyOrderStatDTO> orderStatMap = orderMapper.countAndSumGroupByDate(map)
+                .stream()
+                .collect(Collectors.toMap(DailyOrderStatDTO::getOrderDate, x -> x));
+        Map<LocalDate, Integer> newUserMap = userMapper.countGroupByDate(map)
+                .stream()
+                .collect(Collectors.toMap(DailyUserStatDTO::getCreateDate, DailyUserStatDTO::getNewUsers));
+
+        Map<LocalDate, DailyBusinessStats> statsMap = new LinkedHashMap<>();
+        for (LocalDate date : getDateList(begin, end)) {
+            DailyOrderStatDTO orderStat = orderStatMap.get(date);
+            Double turnover = orderStat == null ? null : orderStat.getTurnover();
+            DailyBusinessStats stats = DailyBusinessStats.builder()
+                    .statDate(date)
+                    .turnover(turnover == null ? BigDecimal.ZERO : BigDecimal.valueOf(turnover))
+                    .totalOrderCount(orderStat == null ? 0 : orderStat.getOrderCount())
+                    .validOrderCount(orderStat == null ? 0 : orderStat.getValidOrderCount())
+                    .newUsers(newUserMap.getOrDefault(date, 0))
+                    .build();
+            statsMap.put(date, stats);
+        }
+        return statsMap;
+    }
+
+    /**
+     * 累加多天的营业数据并计算订单完成率和平均客单价
+     *
+     * @param statsList
+     * @return
+     */
+    @Override
+    public BusinessDataVO sumBusinessData(List<DailyBusinessStats> statsList) {
+        BigDecimal turnover = BigDecimal.ZERO;
+        Integer totalOrderCount = 0;
+        Integer validOrderCount = 0;
+        Integer newUsers = 0;
+        for (DailyBusinessStats stats : statsList) {
+            turnover = turnover.add(stats.getTurnover());
+            totalOrderCount += stats.getTotalOrderCount();
+            validOrderCount += stats.getValidOrderCount();
+            newUsers += stats.getNewUsers();
+        }
+        return buildBusinessData(turnover.doubleValue(), totalOrderCount, validOrderCount, newUsers);
+    }
+
+    /**
+     * 根据营业额、订单数和新增用户数计算营业数据
+     *
+     * @param turnover
+     * @param totalOrderCount
+     * @param validOrderCount
+     * @param newUsers
+     * @return
+     */
+    @Override
+    public BusinessDataVO buildBusinessData(Double turnover, Integer totalOrderCount, Integer validOrderCount, Integer newUsers) {
+        Double unitPrice = 0.0;
+        Double orderCompletionRate = 0.0;
+        if (totalOrderCount != 0 && validOrderCount != 0) {
+            //订单完成率
+            orderCompletionRate = validOrderCount.doubleValue() / totalOrderCount;
+            //平均客单价
+            unitPrice = turnover / validOrderCount;
+        }
+
+        return BusinessDataVO.builder()
+                .turnover(turnover)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(newUsers)
+                .build();
+    }
+
+    /**
+     * 封装日期列表
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    private List<LocalDate> getDateList(LocalDate begin, LocalDate end) {
+        List<LocalDate> dateList = new ArrayList<>();
+        while (!begin.isAfter(end)) {
+            dateList.add(begin);
+            begin = begin.plusDays(1);
+        }
+        return dateList;
+    }
+}
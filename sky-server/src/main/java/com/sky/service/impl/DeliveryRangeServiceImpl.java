@@ -0,0 +1,203 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.constant.MessageConstant;
+import com.sky.exception.OrderBusinessException;
+import com.sky.properties.DeliveryProperties;
+import com.sky.service.DeliveryRangeService;
+import com.sky.utils.GeoUtil;
+import com.sky.utils.HttpClientUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+public class DeliveryRangeServiceImpl implements DeliveryRangeService {
+
+    // 收货地址经纬度坐标的缓存key前缀 后接地址的md5
+    private static final String GEOCODE_KEY_PREFIX = "geocode:";
+
+    @Value("${sky.shop.address}")
+    private String shopAddress;
+
+    @Value("${sky.baidu.ak}")
+    private String ak;
+
+    @Autowired
+    private DeliveryProperties deliveryProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 店铺经纬度坐标 店铺地址固定 只需解析一次
+    private volatile Location shopLocation;
+
+    /**
+     * 启动时解析店铺地址 失败时在第一次下单时重试 不影响应用启动
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            getShopLocation();
+        } catch (Exception e) {
+            log.warn("启动时解析店铺地址失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 检查收货地址是否超出配送范围
+     *
+     * @param address
+     */
+    @Override
+    public void checkOutOfRange(String address) {
+        Location shop = getShopLocation();
+        Location user = getUserLocation(address);
+
+        // 直线距离不会超过驾车距离 直线距离已超出时不必再规划路线
+        double straightDistance = GeoUtil.distance(shop.lat, shop.lng, user.lat, user.lng);
+        if (straightDistance > deliveryProperties.getMaxDistance()) {
+            log.info("收货地址直线距离超出配送范围: {}, {}米", address, (long) straightDistance);
+            throw new OrderBusinessException(MessageConstant.OUT_OF_DELIVERY_RANGE);
+        }
+
+        Map<String, String> map = new HashMap<>();
+        map.put("origin", shop.toString());
+        map.put("destination", user.toString());
+        map.put("steps_info", "0");
+        map.put("ak", ak);
+        //路线规划
+        JSONObject jsonObject = parse(HttpClientUtil.doGet(deliveryProperties.getDrivingUrl(), map));
+        if (jsonObject == null) {
+            throw new OrderBusinessException(MessageConstant.DELIVERY_ROUTE_FAILED);
+        }
+        JSONArray routes = jsonObject.getJSONObject("result").getJSONArray("routes");
+        if (routes == null || routes.isEmpty()) {
+            throw new OrderBusinessException(MessageConstant.DELIVERY_ROUTE_FAILED);
+        }
+        Integer distance = routes.getJSONObject(0).getInteger("distance");
+        if (distance == null || distance > deliveryProperties.getMaxDistance()) {
+            throw new OrderBusinessException(MessageConstant.OUT_OF_DELIVERY_RANGE);
+        }
+    }
+
+    private Location getShopLocation() {
+        Location location = shopLocation;
+        if (location == null) {
+            location = geocode(shopAddress);
+            if (location == null) {
+                throw new OrderBusinessException(MessageConstant.SHOP_ADDRESS_PARSE_FAILED);
+            }
+            log.info("店铺地址解析结果: {}", location);
+            shopLocation = location;
+        }
+        return location;
+    }
+
+    /**
+     * 解析收货地址的经纬度坐标 优先读取Redis缓存 解析失败的结果不缓存
+     *
+     * @param address
+     * @return
+     */
+    private Location getUserLocation(String address) {
+        String key = GEOCODE_KEY_PREFIX + DigestUtils.md5DigestAsHex(address.getBytes(StandardCharsets.UTF_8));
+        String cached = stringRedisTemplate.opsForValue().get(key);
+        if (cached != null) {
+            Location location = Location.parse(cached);
+            if (location != null) {
+                return location;
+            }
+        }
+
+        Location location = geocode(address);
+        if (location == null) {
+            throw new OrderBusinessException(MessageConstant.ADDRESS_PARSE_FAILED);
+        }
+        stringRedisTemplate.opsForValue().set(key, location.toString(), deliveryProperties.getGeocodeExpireHours(), TimeUnit.HOURS);
+        return location;
+    }
+
+    /**
+     * 调用地理编码接口解析地址的经纬度坐标
+     *
+     * @param address
+     * @return 解析失败时返回null
+     */
+    private Location geocode(String address) {
+        Map<String, String> map = new HashMap<>();
+        map.put("address", address);
+        map.put("output", "json");
+        map.put("ak", ak);
+        JSONObject jsonObject = parse(HttpClientUtil.doGet(deliveryProperties.getGeocodingUrl(), map));
+        if (jsonObject == null) {
+            return null;
+        }
+        JSONObject location = jsonObject.getJSONObject("result").getJSONObject("location");
+        if (location == null) {
+            return null;
+        }
+        return Location.parse(location.getString("lat") + "," + location.getString("lng"));
+    }
+
+    /**
+     * 解析百度地图接口的返回结果
+     *
+     * @param json
+     * @return 请求失败或status不为0时返回null
+     */
+    private JSONObject parse(String json) {
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        JSONObject jsonObject = JSON.parseObject(json);
+        if (!"0".equals(jsonObject.getString("status")) || jsonObject.getJSONObject("result") == null) {
+            log.warn("百度地图接口返回错误: {}", json);
+            return null;
+        }
+        return jsonObject;
+    }
+
+    /**
+     * 经纬度坐标 格式与百度地图接口一致 纬度,经度
+     */
+    private static class Location {
+        private final String text;
+        private final double lat;
+        private final double lng;
+
+        private Location(String text, double lat, double lng) {
+            this.text = text;
+            this.lat = lat;
+            this.lng = lng;
+        }
+
+        private static Location parse(String text) {
+            String[] parts = text.split(",");
+            if (parts.length != 2) {
+                return null;
+            }
+            try {
+                return new Location(text, Double.parseDouble(parts[0]), Double.parseDouble(parts[1]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuCacheInvalidator;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -23,6 +24,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 
 @Slf4j
@@ -35,6 +38,8 @@ public class DishServiceImpl implements DishService {
     private DishFlavorMapper dishFlavorMapper;
     @Autowired
     private SetmealDishMapper setmealDishMapper;
+    @Autowired
+    private MenuCacheInvalidator menuCacheInvalidator;
 
     /**
      * 新增菜品和对应的口味
@@ -55,6 +60,7 @@ public class DishServiceImpl implements DishService {
             });
             dishFlavorMapper.insertBatch(flavors);
         }
+        menuCacheInvalidator.evictDish(dishDto.getCategoryId());
     }
 
     /**
@@ -79,12 +85,14 @@ public class DishServiceImpl implements DishService {
     @Transactional // 开启事务 保持数据的一致性
     public void deteteBatch(List<Long> ids) {
         // 判断菜品是起售、停售状态
+        List<Long> categoryIds = new ArrayList<>();
         for (Long id : ids) {
             Dish dish  = dishMapper.getById(id);
             if (dish.getStatus() == StatusConstant.ENABLE){
                 log.info("当前菜品属于售卖状态: {}",dish);
                 throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
             }
+            categoryIds.add(dish.getCategoryId());
         }
         // 判断套餐中是否包含当前菜品
         List<Long> SetmealIds = setmealDishMapper.getSetmealIdsByDishIds(ids);
@@ -97,6 +105,9 @@ public class DishServiceImpl implements DishService {
 
         // 删除菜品对应的口味表
         dishFlavorMapper.deleteByDishIds(ids);
+
+        // 删除菜品所属分类的缓存
+        menuCacheInvalidator.evictDish(categoryIds);
 //        for (Long id : ids) {
 //            // 删除菜品
 //            dishMapper.deleteById(id);
@@ -130,6 +141,10 @@ public class DishServiceImpl implements DishService {
     @Override
     @Transactional
     public void updateWitnFlavor(DishDTO dishDTO) {
+        // 修改前后所属分类的缓存都需要删除
+        Dish dishDB = dishMapper.getById(dishDTO.getId());
+        menuCacheInvalidator.evictDish(dishDB.getCategoryId(), dishDTO.getCategoryId());
+
         Dish dish = new Dish();
         BeanUtils.copyProperties(dishDTO,dish);
         // 根据id修改菜品基本信息
@@ -174,13 +189,20 @@ public class DishServiceImpl implements DishService {
         List<Dish> dishList = dishMapper.list(dish);
 
         List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList.isEmpty()) {
+            return dishVOList;
+        }
+
+        //一次查询出所有菜品的口味 按菜品id分组
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
 
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
+            List<DishFlavor> flavors = flavorMap.getOrDefault(d.getId(), new ArrayList<>());
 
             dishVO.setFlavors(flavors);
             dishVOList.add(dishVO);
@@ -197,6 +219,8 @@ public class DishServiceImpl implements DishService {
     @Override
     public void startOrStop(Integer status, Long id) {
         dishMapper.startOrStop(status,id);
+        Dish dish = dishMapper.getById(id);
+        menuCacheInvalidator.evictDish(dish.getCategoryId());
     }
 
     /**
@@ -1,7 +1,5 @@
 package com.sky.service.impl;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
@@ -13,39 +11,53 @@ import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.properties.OrderTaskProperties;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
+import com.sky.service.DailyBusinessStatsService;
+import com.sky.service.DeliveryRangeService;
 import com.sky.service.OrderService;
-import com.sky.utils.HttpClientUtil;
+import com.sky.service.OrderTimeoutService;
+import com.sky.service.RefundService;
+import com.sky.service.ShoppingCartService;
+import com.sky.utils.SnowflakeIdGenerator;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
+import com.sky.websocket.WebSocketBroadcaster;
 import com.sky.websocket.WebSocketServer;
 import io.swagger.util.Json;
-import org.springframework.beans.factory.annotation.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class OrderServiceImpl implements OrderService {
-    @Value("${sky.shop.address}")
-    private String shopAddress;
+    // 游标分页中下单时间的格式 与查询参数的格式保持一致
+    private static final DateTimeFormatter CURSOR_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // 已处理的支付成功回调 后接微信支付交易号 微信最多在24小时内重复回调
+    private static final String PAY_NOTIFY_KEY_PREFIX = "pay_notify:";
+    private static final long PAY_NOTIFY_EXPIRE_HOURS = 48;
+    // 未传每页记录数时的默认值
+    private static final int DEFAULT_PAGE_SIZE = 10;
 
-    @Value("${sky.baidu.ak}")
-    private String ak;
     // 操作订单表和订单明细表
     @Autowired
     private OrderMapper orderMapper;
@@ -54,14 +66,39 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private AddressBookMapper addressBookMapper;
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
-    @Autowired
     private WeChatPayUtil weChatPayUtil;
     @Autowired
     private UserMapper userMapper;
 
     @Autowired
-    private WebSocketServer webSocketServer;
+    private DailyBusinessStatsService dailyBusinessStatsService;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private WebSocketBroadcaster webSocketBroadcaster;
+
+    @Autowired
+    private DeliveryRangeService deliveryRangeService;
+
+    @Autowired
+    private RefundService refundService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+
+    @Autowired
+    private OrderTimeoutService orderTimeoutService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderTaskProperties orderTaskProperties;
 
     /**
      * 提交订单
@@ -69,7 +106,6 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersSubmitDTO
      * @return
      */
-    @Transactional // 开启事务
     @Override
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
 
@@ -79,14 +115,11 @@ public class OrderServiceImpl implements OrderService {
             throw new AddressBookBusinessException(MessageConstant.ADDRESS_BOOK_IS_NULL);
         }
 
-        // 检查用户的收货地址是否超出配送范围
-        checkOutOfRange(addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail());
+        // 检查用户的收货地址是否超出配送范围 需要调用地图接口 在开启事务之前执行 避免长时间占用数据库连接
+        deliveryRangeService.checkOutOfRange(addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail());
         // 查询当前用户的购物车数据是否为空
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = ShoppingCart.builder()
-                .userId(userId)
-                .build();
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = shoppingCartService.showShoppingCart();
         if (shoppingCartList == null || shoppingCartList.isEmpty()) {
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
@@ -96,26 +129,32 @@ public class OrderServiceImpl implements OrderService {
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
+        orders.setNumber(snowflakeIdGenerator.nextIdStr());
         orders.setPhone(addressBook.getPhone());
         orders.setConsignee(addressBook.getConsignee());
         orders.setUserId(userId);
         orders.setAddress(deliveryAddress(addressBook));
-        // 向订单表插入1条数据
-        orderMapper.insert(orders);
-
-        // 向订单明细表插入n条数据
-        List<OrderDetail> orderDetailList = new ArrayList<>();
-        shoppingCartList.forEach(cart -> {
-            OrderDetail orderDetail = new OrderDetail(); // 订单明细
-            BeanUtils.copyProperties(cart, orderDetail);
-            orderDetail.setOrderId(orders.getId()); // 设置当前订单明细关联的订单id
-//            orderDetailMapper.insert(orderDetail);
-            orderDetailList.add(orderDetail);
+
+        // 开启事务
+        transactionTemplate.execute(status -> {
+            // 向订单表插入1条数据
+            orderMapper.insert(orders);
+
+            // 向订单明细表插入n条数据
+            List<OrderDetail> orderDetailList = new ArrayList<>();
+            shoppingCartList.forEach(cart -> {
+                OrderDetail orderDetail = new OrderDetail(); // 订单明细
+                BeanUtils.copyProperties(cart, orderDetail);
+                orderDetail.setOrderId(orders.getId()); // 设置当前订单明细关联的订单id
+                orderDetailList.add(orderDetail);
+            });
+            orderDetailMapper.insertBatch(orderDetailList);
+            // 清空当前用户的购物车数据 事务提交后执行
+            shoppingCartService.cleanShoppingCart();
+            return null;
         });
-        orderDetailMapper.insertBatch(orderDetailList);
-        // 清空当前用户的购物车数据
-        shoppingCartMapper.deleteByUserId(userId);
+        // 到期未支付时自动取消
+        orderTimeoutService.schedule(orders.getId(), orders.getOrderTime());
         // 封装VO返回结果
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
                 .id(orders.getId())
@@ -149,12 +188,22 @@ public class OrderServiceImpl implements OrderService {
         Long userId = BaseContext.getCurrentId();
         User user = userMapper.getById(userId);
 
-        //调用微信支付接口，生成预支付交易单
+        // 只有自己的待付款订单可以支付 已取消或已支付的订单不再生成预支付交易单
+        Orders ordersDB = orderMapper.getByNumber(ordersPaymentDTO.getOrderNumber());
+        if (ordersDB == null || !userId.equals(ordersDB.getUserId())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+        if (!Orders.PENDING_PAYMENT.equals(ordersDB.getStatus())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+
+        //调用微信支付接口，生成预支付交易单 支付截止时间与超时取消的时间一致
         JSONObject jsonObject = weChatPayUtil.pay(
                 ordersPaymentDTO.getOrderNumber(), //商户订单号
                 new BigDecimal(0.01), //支付金额，单位 元
                 "苍穹外卖订单", //商品描述
-                user.getOpenid() //微信用户的openid
+                user.getOpenid(), //微信用户的openid
+                ordersDB.getOrderTime().plusMinutes(orderTaskProperties.getPaymentTimeoutMinutes()) //支付截止时间
         );
 
         if (jsonObject.getString("code") != null && jsonObject.getString("code").equals("ORDERPAID")) {
@@ -170,62 +219,109 @@ public class OrderServiceImpl implements OrderService {
     /**
      * 支付成功，修改订单状态
      * @param outTradeNo
+     * @param transactionId
      */
-    public void paySuccess(String outTradeNo) {
-        Long userId = BaseContext.getCurrentId();
-        Orders ordersDB = orderMapper.getByNumber(outTradeNo, userId);
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
-        Orders orders = Orders.builder()
-                .id(ordersDB.getId())
-                .status(Orders.TO_BE_CONFIRMED)
-                .payStatus(Orders.PAID)
-                .checkoutTime(LocalDateTime.now())
-                .build();
-        orderMapper.update(orders);
+    public void paySuccess(String outTradeNo, String transactionId) {
+        // 回调线程中没有登录用户 是否处理由订单的条件更新决定 标记只用于快速跳过已处理的重复回调
+        String key = PAY_NOTIFY_KEY_PREFIX + transactionId;
+        if (transactionId != null && isPayNotified(key)) {
+            log.info("重复的支付成功回调：{}", transactionId);
+            return;
+        }
+
+        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+        if (ordersDB == null) {
+            log.warn("支付成功回调的订单不存在：{}", outTradeNo);
+            return;
+        }
+        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间 只有待付款的订单能修改成功
+        int rows = orderMapper.updatePayStatus(ordersDB.getId(), Orders.PENDING_PAYMENT,
+                Orders.TO_BE_CONFIRMED, Orders.PAID, LocalDateTime.now());
+        if (rows == 0) {
+            // 重新查询修改后的订单 并发的重复回调可能刚刚修改了订单
+            Orders current = orderMapper.getById(ordersDB.getId());
+            if (current != null && Orders.UN_PAID.equals(current.getPayStatus())) {
+                // 订单已超时取消或已被处理 用户实际已付款 需要原路退回 同一订单只登记一次退款
+                log.warn("订单已不是待付款状态，发起退款：{}，状态：{}", outTradeNo, current.getStatus());
+                refundService.createRefund(current);
+            } else {
+                log.info("订单已支付，忽略重复的支付成功回调：{}", outTradeNo);
+            }
+            markPayNotified(key, transactionId, outTradeNo);
+            return;
+        }
+        markPayNotified(key, transactionId, outTradeNo);
+        orderTimeoutService.remove(ordersDB.getId());
 
-        // 通过webSocket向客户端浏览器推送消息 type orderId content
-        Map map = new HashMap();
+        // 通过webSocket向所有节点的客户端浏览器推送消息 type orderId content
+        Map<String, Object> map = new HashMap<>();
         map.put("type", 1); // 1表示来单提醒  2表示客户催单
         map.put("orderId", ordersDB.getId());
         map.put("content", "订单号: " + outTradeNo);
 
-        String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        webSocketBroadcaster.broadcast(WebSocketServer.TOPIC_ORDER, map);
+    }
+
+    /**
+     * 交易号是否已处理过 Redis不可用时按未处理继续 由数据库判断
+     * @param key
+     * @return
+     */
+    private boolean isPayNotified(String key) {
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.hasKey(key));
+        } catch (Exception e) {
+            log.warn("查询支付回调标记失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 订单处理完成后记录已处理的交易号 写入失败只影响重复回调的快速返回
+     * @param key
+     * @param transactionId
+     * @param outTradeNo
+     */
+    private void markPayNotified(String key, String transactionId, String outTradeNo) {
+        if (transactionId == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForValue().set(key, outTradeNo, PAY_NOTIFY_EXPIRE_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("写入支付回调标记失败: {}", e.getMessage());
+        }
     }
 
     /**
      * 历史订单查询
      *
-     * @param pageNum
-     * @param pageSize
-     * @param status
+     * @param ordersPageQueryDTO
      * @return
      */
     @Override
-    public PageResult pageQuery4User(int pageNum, int pageSize, Integer status) {
-        // 开始分页
-        PageHelper.startPage(pageNum, pageSize);
+    public PageResult pageQuery4User(OrdersPageQueryDTO ordersPageQueryDTO) {
         // 查询当前用户的历史订单
-        OrdersPageQueryDTO ordersPageQueryDTO = new OrdersPageQueryDTO();
         ordersPageQueryDTO.setUserId(BaseContext.getCurrentId());
-        ordersPageQueryDTO.setStatus(status);
         // 分页条件查询
-        Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO);
+        Page<Orders> page = pageQueryOrders(ordersPageQueryDTO);
+        List<Orders> ordersList = page.subList(0, Math.min(page.size(), ordersPageQueryDTO.getPageSize()));
         List<OrderVO> list = new ArrayList<>();
         // 查询出订单明细，并封装入OrderVO进行响应
-        if (page != null && page.getTotal() > 0) {
-            for (Orders orders : page) {
+        if (!ordersList.isEmpty()) {
+            // 一次查询出当前页所有订单的明细
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
+            for (Orders orders : ordersList) {
                 OrderVO orderVO = new OrderVO();
                 // TODO 不明白为什么能在这个地方进行属性拷贝
 //                orderVO.setOrderDishes(String.valueOf(orders));
                 BeanUtils.copyProperties(orders, orderVO);
-                // 根据订单的order_id查询订单详情表中的数据
-                List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orders.getId());
+                List<OrderDetail> orderDetails = orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>());
                 orderVO.setOrderDetailList(orderDetails);
                 list.add(orderVO);
             }
         }
-        return new PageResult(page.getTotal(), list);
+        return buildPageResult(ordersPageQueryDTO, page, list);
     }
 
     /**
@@ -264,22 +360,18 @@ public class OrderServiceImpl implements OrderService {
         }
         Orders orders = new Orders();
         orders.setId(ordersDB.getId());
-        // 订单处于待接单状态下取消，需要进行退款
+        // 订单处于待接单状态下取消，需要进行退款 事务提交后由退款线程调用微信支付退款接口 退款成功后支付状态修改为 退款
         if (ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
-            //调用微信支付退款接口
-            weChatPayUtil.refund(
-                    ordersDB.getNumber(), //商户订单号
-                    ordersDB.getNumber(), //商户退款单号
-                    new BigDecimal(0.01),//退款金额，单位 元
-                    new BigDecimal(0.01));//原订单金额
-            //支付状态修改为 退款
-            orders.setPayStatus(Orders.REFUND);
+            refundService.createRefund(ordersDB);
         }
         // 更新订单状态、取消原因、取消时间
         orders.setStatus(Orders.CANCELLED);
         orders.setCancelReason("用户取消");
         orders.setCancelTime(LocalDateTime.now());
         orderMapper.update(orders);
+        if (ordersDB.getStatus().equals(Orders.PENDING_PAYMENT)) {
+            orderTimeoutService.remove(ordersDB.getId());
+        }
     }
 
     /**
@@ -301,8 +393,8 @@ public class OrderServiceImpl implements OrderService {
             shoppingCart.setCreateTime(LocalDateTime.now());
             shoppingCartList.add(shoppingCart);
         });
-        // 将购物车对象添加到数据库中
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        // 将购物车对象添加到购物车中
+        shoppingCartService.addShoppingCartItems(shoppingCartList);
     }
 
     /**
@@ -313,10 +405,10 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO) {
-        PageHelper.startPage(ordersPageQueryDTO.getPage(), ordersPageQueryDTO.getPageSize());
-        Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO);
-        List<OrderVO> orderVOList = getOrderVOList(page);
-        return new PageResult(page.getTotal(), orderVOList);
+        Page<Orders> page = pageQueryOrders(ordersPageQueryDTO);
+        List<Orders> ordersList = page.subList(0, Math.min(page.size(), ordersPageQueryDTO.getPageSize()));
+        List<OrderVO> orderVOList = getOrderVOList(ordersList);
+        return buildPageResult(ordersPageQueryDTO, page, orderVOList);
     }
 
     /**
@@ -357,6 +449,7 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param ordersRejectionDTO
      */
+    @Transactional
     @Override
     public void rejection(OrdersRejectionDTO ordersRejectionDTO) throws Exception {
         // 查询当前订单
@@ -369,13 +462,8 @@ public class OrderServiceImpl implements OrderService {
         //支付状态
         Integer payStatus = ordersDB.getPayStatus();
         if (payStatus == Orders.PAID) {
-            //用户已支付，需要退款
-            String refund = weChatPayUtil.refund(
-                    ordersDB.getNumber(),
-                    ordersDB.getNumber(),
-                    new BigDecimal(0.01),
-                    new BigDecimal(0.01));
-            log.info("申请退款：{}", refund);
+            //用户已支付，需要退款 事务提交后由退款线程处理
+            refundService.createRefund(ordersDB);
         }
 
         // 拒单需要退款，根据订单id更新订单状态、拒单原因、取消时间
@@ -393,6 +481,7 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param ordersCancelDTO
      */
+    @Transactional
     @Override
     public void cancel(OrdersCancelDTO ordersCancelDTO) throws Exception {
         // 查询当前订单的一个状态
@@ -401,13 +490,8 @@ public class OrderServiceImpl implements OrderService {
         //支付状态
         Integer payStatus = ordersDB.getPayStatus();
         if (payStatus == 1) {
-            //用户已支付，需要退款
-            String refund = weChatPayUtil.refund(
-                    ordersDB.getNumber(),
-                    ordersDB.getNumber(),
-                    new BigDecimal(0.01),
-                    new BigDecimal(0.01));
-            log.info("申请退款：{}", refund);
+            //用户已支付，需要退款 事务提交后由退款线程处理
+            refundService.createRefund(ordersDB);
         }
 
         // 管理端取消订单需要退款，根据订单id更新订单状态、取消原因、取消时间
@@ -417,6 +501,8 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelReason(ordersCancelDTO.getCancelReason());
         orders.setCancelTime(LocalDateTime.now());
         orderMapper.update(orders);
+        // 取消已完成的订单需要修正已汇总的营业数据
+        dailyBusinessStatsService.orderStatusChanged(ordersDB, Orders.CANCELLED);
     }
 
     /**
@@ -443,6 +529,7 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param id
      */
+    @Transactional
     @Override
     public void complete(Long id) {
         // 查询当前订单
@@ -458,6 +545,8 @@ public class OrderServiceImpl implements OrderService {
                 .deliveryTime(LocalDateTime.now())
                 .build();
         orderMapper.update(orders);
+        // 之前日期的订单完成时 修改已汇总的营业数据
+        dailyBusinessStatsService.orderStatusChanged(ordersDB, Orders.COMPLETED);
     }
 
     /**
@@ -470,24 +559,85 @@ public class OrderServiceImpl implements OrderService {
         if (orders == null) {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
-        Map map = new HashMap();
+        Map<String, Object> map = new HashMap<>();
         map.put("type", 2);
         map.put("orderId",id);
         map.put("content", "订单号:" + orders.getNumber());
-        String json = JSON.toJSONString(map);
-        // 通过websocket向客户端浏览器推送消息
-        webSocketServer.sendToAllClient(json);
+        // 通过websocket向所有节点的客户端浏览器推送消息
+        webSocketBroadcaster.broadcast(WebSocketServer.TOPIC_ORDER, map);
+    }
+
+    /**
+     * 分页查询订单 传入游标时从游标位置向后查询 不再使用offset和总记录数查询
+     *
+     * @param ordersPageQueryDTO
+     * @return 游标查询时会多返回一条 用来判断是否还有下一页
+     */
+    private Page<Orders> pageQueryOrders(OrdersPageQueryDTO ordersPageQueryDTO) {
+        // 未传分页参数时使用默认值 后续截取和封装结果都使用修正后的值
+        if (ordersPageQueryDTO.getPage() <= 0) {
+            ordersPageQueryDTO.setPage(1);
+        }
+        if (ordersPageQueryDTO.getPageSize() <= 0) {
+            ordersPageQueryDTO.setPageSize(DEFAULT_PAGE_SIZE);
+        }
+        int pageSize = ordersPageQueryDTO.getPageSize();
+        if (isCursorQuery(ordersPageQueryDTO)) {
+            PageHelper.startPage(1, pageSize + 1, false);
+            return orderMapper.pageQuery(ordersPageQueryDTO);
+        }
+
+        boolean count = !Boolean.TRUE.equals(ordersPageQueryDTO.getSkipCount());
+        PageHelper.startPage(ordersPageQueryDTO.getPage(), pageSize, count);
+        return orderMapper.pageQuery(ordersPageQueryDTO);
+    }
+
+    /**
+     * 封装分页结果 附带下一页的游标
+     *
+     * @param ordersPageQueryDTO
+     * @param page
+     * @param records
+     * @return
+     */
+    private PageResult buildPageResult(OrdersPageQueryDTO ordersPageQueryDTO, Page<Orders> page, List records) {
+        int pageSize = ordersPageQueryDTO.getPageSize();
+        boolean hasMore;
+        long total = -1; // 未查询总记录数时为-1
+        if (isCursorQuery(ordersPageQueryDTO)) {
+            // 查询时多取了一条 取到了说明还有下一页
+            hasMore = page.size() > pageSize;
+        } else if (!Boolean.TRUE.equals(ordersPageQueryDTO.getSkipCount())) {
+            total = page.getTotal();
+            hasMore = (long) ordersPageQueryDTO.getPage() * pageSize < total;
+        } else {
+            hasMore = page.size() == pageSize;
+        }
+
+        String nextCursorTime = null;
+        Long nextCursorId = null;
+        int lastIndex = Math.min(page.size(), pageSize) - 1;
+        if (lastIndex >= 0) {
+            Orders last = page.get(lastIndex);
+            nextCursorTime = last.getOrderTime().format(CURSOR_TIME_FORMATTER);
+            nextCursorId = last.getId();
+        }
+        return new CursorPageResult(total, records, hasMore, nextCursorTime, nextCursorId);
+    }
+
+    private boolean isCursorQuery(OrdersPageQueryDTO ordersPageQueryDTO) {
+        return ordersPageQueryDTO.getCursorTime() != null && ordersPageQueryDTO.getCursorId() != null;
     }
 
-    private List<OrderVO> getOrderVOList(Page<Orders> page) {
+    private List<OrderVO> getOrderVOList(List<Orders> ordersList) {
         List<OrderVO> orderVOList = new ArrayList<>();
-        List<Orders> ordersList = page.getResult();
-        // 获取订单菜品信息封装在一个list中 -- 一个订单对应着一个orderDetailList
+        // 一次查询出当前页所有订单的明细 -- 一个订单对应着一个orderDetailList
+        Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
         ordersList.forEach(orders -> {
             // 将共同字段复制到 OrderVO
             OrderVO orderVO = new OrderVO();
             BeanUtils.copyProperties(orders, orderVO);
-            String orderDishes = getOrderDishesStr(orders);
+            String orderDishes = getOrderDishesStr(orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>()));
             // 将订单菜品信息封装到orderVO中，并添加到orderVOList
             orderVO.setOrderDishes(orderDishes);
             orderVOList.add(orderVO);
@@ -496,13 +646,27 @@ public class OrderServiceImpl implements OrderService {
     }
 
     /**
-     * 根据订单id获取菜品信息字符串
+     * 批量查询订单明细 并按订单id分组
+     *
+     * @param ordersList
+     * @return
+     */
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+        if (ordersList == null || ordersList.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        return orderDetailMapper.getByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+    }
+
+    /**
+     * 根据订单明细获取菜品信息字符串
      *
-     * @param orders
+     * @param orderDetailList
      * @return
      */
-    private String getOrderDishesStr(Orders orders) {
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
+    private String getOrderDishesStr(List<OrderDetail> orderDetailList) {
         // 将每一条订单菜品信息拼接为字符串（格式：宫保鸡丁
         List<String> orderDishList = orderDetailList.stream().map(x -> {
             String orderDish = x.getName() + "*" + x.getNumber() + ";";
@@ -519,59 +683,4 @@ public class OrderServiceImpl implements OrderService {
                 + a.getDistrictName()
                 + a.getDetail();
     }
-
-    /**
-     * 检查客户的收货地址是否超出配送范围
-     *
-     * @param address
-     */
-    private void checkOutOfRange(String address) {
-        Map map = new HashMap();
-        map.put("address", shopAddress);
-        map.put("output", "json");
-        map.put("ak", ak);
-        //获取店铺的经纬度坐标
-        String shopCoordinate = HttpClientUtil.doGet("https://api.map.baidu.com/geocoding/v3", map);
-        JSONObject jsonObject = JSON.parseObject(shopCoordinate);
-        if (!jsonObject.getString("status").equals("0")) {
-            throw new OrderBusinessException("店铺地址解析失败");
-        }
-        //数据解析
-        JSONObject location = jsonObject.getJSONObject("result").getJSONObject("location");
-        String lat = location.getString("lat");
-        String lng = location.getString("lng");
-        //店铺经纬度坐标
-        String shopLngLat = lat + "," + lng;
-        map.put("address", address);
-        //获取用户收货地址的经纬度坐标
-        String userCoordinate = HttpClientUtil.doGet("https://api.map.baidu.com/geocoding/v3", map);
-        jsonObject = JSON.parseObject(userCoordinate);
-        if (!jsonObject.getString("status").equals("0")) {
-            throw new OrderBusinessException("收货地址解析失败");
-        }
-        //数据解析
-        location = jsonObject.getJSONObject("result").getJSONObject("location");
-        lat = location.getString("lat");
-        lng = location.getString("lng");
-        //用户收货地址经纬度坐标
-        String userLngLat = lat + "," + lng;
-        map.put("origin", shopLngLat);
-        map.put("destination", userLngLat);
-        map.put("steps_info", "1");
-        //路线规划
-        String json = HttpClientUtil.doGet("https://api.map.baidu.com/directionlite/v1/driving", map);
-        log.error("百度路线规划接口返回结果：{}", json);
-        jsonObject = JSON.parseObject(json);
-        if (!jsonObject.getString("status").equals("0")) {
-            throw new OrderBusinessException("配送路线规划失败");
-        }
-        //数据解析
-        JSONObject result = jsonObject.getJSONObject("result");
-        JSONArray jsonArray = (JSONArray) result.get("routes");
-        Integer distance = (Integer) ((JSONObject) jsonArray.get(0)).get("distance");
-        if (distance > 20 * 1000) {
-            //配送距离超过5000米
-            throw new OrderBusinessException("超出配送范围");
-        }
-    }
 }
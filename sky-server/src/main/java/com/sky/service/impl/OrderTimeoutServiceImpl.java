@@ -0,0 +1,114 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderTaskProperties;
+import com.sky.service.OrderTimeoutService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class OrderTimeoutServiceImpl implements OrderTimeoutService {
+
+    // 延迟队列 member为订单id score为超时时间戳
+    private static final String TIMEOUT_KEY = "order:timeout";
+
+    // 取出并删除已到期的订单 多个节点同时执行时每个订单只会被一个节点取到 ARGV: 当前时间戳 最多取出的数量
+    private static final DefaultRedisScript<List> POLL_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'limit', 0, ARGV[2]) " +
+            "if #ids > 0 then redis.call('zrem', KEYS[1], unpack(ids)) end " +
+            "return ids", List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderTaskProperties orderTaskProperties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 登记订单的超时时间
+     *
+     * @param orderId
+     * @param orderTime
+     */
+    @Override
+    public void schedule(Long orderId, LocalDateTime orderTime) {
+        LocalDateTime deadline = orderTime.plusMinutes(orderTaskProperties.getPaymentTimeoutMinutes());
+        long score = deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        try {
+            stringRedisTemplate.opsForZSet().add(TIMEOUT_KEY, orderId.toString(), score);
+        } catch (Exception e) {
+            // 登记失败不影响下单 由定时扫描兜底取消
+            log.error("登记订单超时时间失败: {}", orderId, e);
+        }
+    }
+
+    /**
+     * 从延迟队列中移除订单
+     *
+     * @param orderId
+     */
+    @Override
+    public void remove(Long orderId) {
+        try {
+            stringRedisTemplate.opsForZSet().remove(TIMEOUT_KEY, orderId.toString());
+        } catch (Exception e) {
+            // 到期后取消时会检查订单状态 已支付的订单不会被取消
+            log.warn("移除订单超时时间失败: {}", orderId, e);
+        }
+    }
+
+    /**
+     * 取消已到期的订单
+     */
+    @Override
+    public void processDue() {
+        int batchSize = orderTaskProperties.getBatchSize();
+        List<String> ids;
+        do {
+            long start = System.nanoTime();
+            ids = stringRedisTemplate.execute(POLL_SCRIPT, Collections.singletonList(TIMEOUT_KEY),
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(batchSize));
+            if (ids == null || ids.isEmpty()) {
+                return;
+            }
+            List<Long> orderIds = ids.stream().map(Long::valueOf).collect(Collectors.toList());
+            Orders orders = Orders.builder()
+                    .status(Orders.CANCELLED)
+                    .cancelReason(MessageConstant.ORDER_TIME_OUT)
+                    .cancelTime(LocalDateTime.now())
+                    .build();
+            int rows;
+            try {
+                // 只取消仍处于待付款状态的订单
+                rows = orderMapper.updateByIdsAndStatus(orders, orderIds, Orders.PENDING_PAYMENT);
+            } catch (RuntimeException e) {
+                // 放回队列 下次重试
+                long now = System.currentTimeMillis();
+                ids.forEach(id -> stringRedisTemplate.opsForZSet().add(TIMEOUT_KEY, id, now));
+                throw e;
+            }
+            meterRegistry.counter("sky.order.task.rows", "task", "timeout_queue").increment(rows);
+            meterRegistry.timer("sky.order.task.duration", "task", "timeout_queue").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (rows > 0) {
+                log.info("取消超时订单: {}个", rows);
+            }
+        } while (ids.size() == batchSize);
+    }
+}
@@ -0,0 +1,203 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.entity.Orders;
+import com.sky.entity.RefundOutbox;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.RefundOutboxMapper;
+import com.sky.properties.RefundProperties;
+import com.sky.service.RefundService;
+import com.sky.utils.SnowflakeIdGenerator;
+import com.sky.utils.WeChatPayUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@Slf4j
+public class RefundServiceImpl implements RefundService {
+
+    // 失败原因最多保存的字符数
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @Autowired
+    private RefundOutboxMapper refundOutboxMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private WeChatPayUtil weChatPayUtil;
+    @Autowired
+    private RefundProperties refundProperties;
+    @Autowired
+    private ThreadPoolTaskExecutor refundExecutor;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 领取任务使用独立的事务 事务提交后的回调中当前线程仍绑定着已提交事务的连接 不能在原事务中执行
+    private TransactionTemplate claimTransactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        claimTransactionTemplate = new TransactionTemplate(transactionManager);
+        claimTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 为已支付的订单登记退款
+     *
+     * @param ordersDB
+     */
+    @Override
+    public void createRefund(Orders ordersDB) {
+        // 数据库时间精确到秒 领取任务时按下次处理时间比较 需要与数据库中的值一致
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        RefundOutbox refundOutbox = RefundOutbox.builder()
+                .orderId(ordersDB.getId())
+                .outTradeNo(ordersDB.getNumber()) //商户订单号
+                .outRefundNo(snowflakeIdGenerator.nextIdStr()) //商户退款单号 一个订单只退款一次 由order_id唯一索引保证
+                .refundAmount(new BigDecimal("0.01")) //退款金额，单位 元
+                .totalAmount(new BigDecimal("0.01")) //原订单金额
+                .status(RefundOutbox.PENDING)
+                .retryCount(0)
+                .nextRetryTime(now)
+                .createTime(now)
+                .updateTime(now)
+                .build();
+        if (refundOutboxMapper.insert(refundOutbox) == 0) {
+            log.info("订单已登记过退款: {}", ordersDB.getNumber());
+            return;
+        }
+
+        // 事务提交后立即处理 不等待定时任务
+        Runnable action = () -> submit(refundOutbox);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 处理到达处理时间的待退款记录
+     */
+    @Override
+    public void processDueRefunds() {
+        List<RefundOutbox> refundList = refundOutboxMapper.listDue(LocalDateTime.now(), refundProperties.getBatchSize());
+        for (RefundOutbox refundOutbox : refundList) {
+            if (!submit(refundOutbox)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 领取退款任务并交给退款线程池处理
+     *
+     * @param refundOutbox
+     * @return 线程池已满时返回false
+     */
+    private boolean submit(RefundOutbox refundOutbox) {
+        if (refundOutbox == null || !RefundOutbox.PENDING.equals(refundOutbox.getStatus())) {
+            return true;
+        }
+        // 多个线程或多个节点同时扫描到同一条记录时只有一个能领取成功
+        LocalDateTime leaseUntil = LocalDateTime.now().plusSeconds(refundProperties.getLeaseSeconds());
+        Integer claimed = claimTransactionTemplate.execute(status ->
+                refundOutboxMapper.claim(refundOutbox.getId(), refundOutbox.getNextRetryTime(), leaseUntil));
+        if (claimed == null || claimed == 0) {
+            return true;
+        }
+        try {
+            refundExecutor.execute(() -> refund(refundOutbox));
+            return true;
+        } catch (TaskRejectedException e) {
+            // 锁定时间过后由定时任务重新处理
+            log.warn("退款线程池已满: {}", refundOutbox.getOutRefundNo());
+            return false;
+        }
+    }
+
+    /**
+     * 调用微信退款接口 失败时按指数退避安排重试
+     *
+     * @param refundOutbox
+     */
+    private void refund(RefundOutbox refundOutbox) {
+        String error;
+        try {
+            //调用微信支付退款接口
+            String result = weChatPayUtil.refund(
+                    refundOutbox.getOutTradeNo(),
+                    refundOutbox.getOutRefundNo(),
+                    refundOutbox.getRefundAmount(),
+                    refundOutbox.getTotalAmount());
+            log.info("申请退款：{}", result);
+            JSONObject jsonObject = JSON.parseObject(result);
+            // 受理成功时返回微信退款单号 同一退款单号重复申请返回原退款单
+            if (jsonObject != null && jsonObject.getString("refund_id") != null) {
+                refundSucceeded(refundOutbox);
+                return;
+            }
+            error = result;
+        } catch (Exception e) {
+            log.error("申请退款失败: {}", refundOutbox.getOutRefundNo(), e);
+            error = e.toString();
+        }
+        refundFailed(refundOutbox, error);
+    }
+
+    private void refundSucceeded(RefundOutbox refundOutbox) {
+        LocalDateTime now = LocalDateTime.now();
+        refundOutbox.setStatus(RefundOutbox.SUCCESS);
+        refundOutbox.setLastError(null);
+        refundOutbox.setUpdateTime(now);
+        transactionTemplate.execute(status -> {
+            refundOutboxMapper.update(refundOutbox);
+            //支付状态修改为 退款
+            Orders orders = new Orders();
+            orders.setId(refundOutbox.getOrderId());
+            orders.setPayStatus(Orders.REFUND);
+            orderMapper.update(orders);
+            return null;
+        });
+    }
+
+    private void refundFailed(RefundOutbox refundOutbox, String error) {
+        int retryCount = refundOutbox.getRetryCount() + 1;
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        refundOutbox.setRetryCount(retryCount);
+        refundOutbox.setLastError(error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        refundOutbox.setUpdateTime(now);
+        if (retryCount > refundProperties.getMaxRetries()) {
+            log.error("退款重试次数已用完，需要人工处理: {}", refundOutbox.getOutRefundNo());
+            refundOutbox.setStatus(RefundOutbox.FAILED);
+        } else {
+            long backoff = Math.min((long) refundProperties.getInitialBackoffSeconds() << Math.min(retryCount - 1, 20),
+                    refundProperties.getMaxBackoffSeconds());
+            refundOutbox.setNextRetryTime(now.plusSeconds(backoff));
+        }
+        refundOutboxMapper.update(refundOutbox);
+    }
+}
@@ -0,0 +1,266 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.ReportExportDTO;
+import com.sky.exception.ReportExportException;
+import com.sky.properties.ReportExportProperties;
+import com.sky.service.ReportExportService;
+import com.sky.service.ReportService;
+import com.sky.vo.ReportExportJobVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@Slf4j
+public class ReportExportServiceImpl implements ReportExportService {
+
+    private static final String FILE_SUFFIX = ".xlsx";
+
+    // 导出任务 任务id -> 任务
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    // 已结束区间正在导出的任务 缓存文件名 -> 任务id 同一区间同时只导出一次
+    private final Map<String, String> runningCacheJobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ReportService reportService;
+    @Autowired
+    private ReportExportProperties reportExportProperties;
+    @Autowired
+    private ThreadPoolTaskExecutor reportExportExecutor;
+
+    /**
+     * 提交报表导出任务
+     *
+     * @param reportExportDTO
+     * @return
+     */
+    @Override
+    public ReportExportJobVO submit(ReportExportDTO reportExportDTO) {
+        String type = reportExportDTO.getType() == null ? ReportExportDTO.BUSINESS_DATA : reportExportDTO.getType();
+        if (!ReportExportDTO.BUSINESS_DATA.equals(type)) {
+            throw new ReportExportException(MessageConstant.REPORT_TYPE_ERROR);
+        }
+        // 未指定时间时默认导出最近30天的营业数据
+        LocalDate begin = reportExportDTO.getBegin() == null ? LocalDate.now().minusDays(30) : reportExportDTO.getBegin();
+        LocalDate end = reportExportDTO.getEnd() == null ? LocalDate.now().minusDays(1) : reportExportDTO.getEnd();
+        reportService.checkExportDateRange(begin, end);
+
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        String fileName = type + "_" + begin + "_" + end + FILE_SUFFIX;
+        // 结束日期在今天之前的区间数据不会再变化 导出文件可以缓存复用
+        boolean closed = end.isBefore(LocalDate.now());
+        File file = closed ? new File(getDir("cache"), fileName) : new File(getDir("jobs"), jobId + FILE_SUFFIX);
+        ExportJob job = new ExportJob(jobId, type, begin, end, fileName, file, closed);
+
+        if (closed && isCacheValid(file)) {
+            log.info("报表导出命中缓存: {}", fileName);
+            job.finish(ReportExportJobVO.SUCCESS, null);
+            jobs.put(jobId, job);
+            return job.toVO();
+        }
+
+        jobs.put(jobId, job);
+        if (closed) {
+            // 原子地登记正在导出的任务 并发提交相同区间时只有一个任务会执行
+            String runningJobId = runningCacheJobs.computeIfAbsent(fileName, key -> jobId);
+            if (!jobId.equals(runningJobId)) {
+                // 相同区间正在导出 直接返回已有的任务
+                jobs.remove(jobId);
+                return getExportJob(runningJobId).toVO();
+            }
+        }
+
+        try {
+            reportExportExecutor.execute(() -> runJob(job));
+        } catch (TaskRejectedException e) {
+            log.warn("报表导出线程池已满: {}", e.getMessage());
+            jobs.remove(jobId);
+            if (closed) {
+                runningCacheJobs.remove(fileName, jobId);
+            }
+            throw new ReportExportException(MessageConstant.REPORT_EXPORT_BUSY);
+        }
+        log.info("提交报表导出任务: {}, {} 至 {}", jobId, begin, end);
+        return job.toVO();
+    }
+
+    /**
+     * 查询报表导出任务
+     *
+     * @param jobId
+     * @return
+     */
+    @Override
+    public ReportExportJobVO getJob(String jobId) {
+        return getExportJob(jobId).toVO();
+    }
+
+    /**
+     * 下载导出完成的报表文件
+     *
+     * @param jobId
+     * @param response
+     */
+    @Override
+    public void download(String jobId, HttpServletResponse response) {
+        ExportJob job = getExportJob(jobId);
+        if (!ReportExportJobVO.SUCCESS.equals(job.status)) {
+            throw new ReportExportException(MessageConstant.REPORT_EXPORT_NOT_FINISHED);
+        }
+        File file = job.file;
+        if (!file.exists()) {
+            throw new ReportExportException(MessageConstant.REPORT_EXPORT_JOB_NOT_FOUND);
+        }
+
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader("Content-Disposition", "attachment; filename=" + job.fileName);
+        response.setContentLengthLong(file.length());
+        try {
+            ServletOutputStream out = response.getOutputStream();
+            Files.copy(file.toPath(), out);
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 清理过期的导出任务和文件
+     */
+    @Override
+    public void clearExpired() {
+        LocalDateTime jobExpireTime = LocalDateTime.now().minusMinutes(reportExportProperties.getJobExpireMinutes());
+        for (ExportJob job : jobs.values()) {
+            boolean finished = ReportExportJobVO.SUCCESS.equals(job.status) || ReportExportJobVO.FAILED.equals(job.status);
+            if (finished && job.createTime.isBefore(jobExpireTime)) {
+                jobs.remove(job.jobId);
+                // 缓存文件按缓存时间单独清理
+                if (!job.cached) {
+                    job.file.delete();
+                }
+            }
+        }
+
+        File[] cacheFiles = getDir("cache").listFiles();
+        if (cacheFiles != null) {
+            for (File cacheFile : cacheFiles) {
+                if (cacheFile.getName().endsWith(FILE_SUFFIX) && !isCacheValid(cacheFile)) {
+                    log.info("删除过期的报表缓存文件: {}", cacheFile.getName());
+                    cacheFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * 执行导出任务 先写入临时文件 完成后再移动到目标位置
+     *
+     * @param job
+     */
+    private void runJob(ExportJob job) {
+        job.status = ReportExportJobVO.RUNNING;
+        File tmpFile = new File(job.file.getParentFile(), job.jobId + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+                reportService.writeBusinessData(job.begin, job.end, out);
+            }
+            Files.move(tmpFile.toPath(), job.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.finish(ReportExportJobVO.SUCCESS, null);
+            log.info("报表导出完成: {}", job.jobId);
+        } catch (Exception e) {
+            log.error("报表导出失败: {}", job.jobId, e);
+            tmpFile.delete();
+            job.finish(ReportExportJobVO.FAILED, e.getMessage());
+        } finally {
+            if (job.cached) {
+                runningCacheJobs.remove(job.fileName, job.jobId);
+            }
+        }
+    }
+
+    private ExportJob getExportJob(String jobId) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ReportExportException(MessageConstant.REPORT_EXPORT_JOB_NOT_FOUND);
+        }
+        return job;
+    }
+
+    private boolean isCacheValid(File file) {
+        long expireMillis = reportExportProperties.getCacheExpireHours() * 3600_000L;
+        return file.exists() && System.currentTimeMillis() - file.lastModified() < expireMillis;
+    }
+
+    private File getDir(String name) {
+        File dir = new File(reportExportProperties.getFileDir(), name);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+
+    /**
+     * 导出任务 状态由导出线程修改 由请求线程读取
+     */
+    private static class ExportJob {
+        private final String jobId;
+        private final String type;
+        private final LocalDate begin;
+        private final LocalDate end;
+        private final String fileName;
+        private final File file;
+        private final boolean cached;
+        private final LocalDateTime createTime = LocalDateTime.now();
+        private volatile Integer status = ReportExportJobVO.WAITING;
+        private volatile String errorMsg;
+        private volatile LocalDateTime finishTime;
+
+        private ExportJob(String jobId, String type, LocalDate begin, LocalDate end, String fileName, File file, boolean cached) {
+            this.jobId = jobId;
+            this.type = type;
+            this.begin = begin;
+            this.end = end;
+            this.fileName = fileName;
+            this.file = file;
+            this.cached = cached;
+        }
+
+        private void finish(Integer status, String errorMsg) {
+            this.errorMsg = errorMsg;
+            this.finishTime = LocalDateTime.now();
+            this.status = status;
+        }
+
+        private ReportExportJobVO toVO() {
+            return ReportExportJobVO.builder()
+                    .jobId(jobId)
+                    .type(type)
+                    .begin(begin)
+                    .end(end)
+                    .status(status)
+                    .fileName(fileName)
+                    .errorMsg(errorMsg)
+                    .createTime(createTime)
+                    .finishTime(finishTime)
+                    .build();
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.sky.service.impl;
 
 import com.alibaba.druid.support.json.JSONUtils;
+import com.sky.constant.MessageConstant;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
+import com.sky.exception.ReportExportException;
 import com.sky.mapper.OrderDetailMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportExportProperties;
+import com.sky.service.DailyBusinessStatsService;
 import com.sky.service.ReportService;
 import com.sky.service.WorkspaceService;
 import com.sky.utils.AliOssUtil;
@@ -13,6 +18,12 @@ import com.sky.vo.*;
 import io.swagger.models.auth.In;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -30,12 +41,18 @@ import java.text.DecimalFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class ReportServiceImpl implements ReportService {
+    // 模板中明细数据的起始行和列
+    private static final int DETAIL_START_ROW = 7;
+    private static final int DETAIL_FIRST_CELL = 1;
+    private static final int DETAIL_LAST_CELL = 6;
+
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
@@ -44,6 +61,10 @@ public class ReportServiceImpl implements ReportService {
     private OrderDetailMapper orderDetailMapper;
     @Autowired
     private WorkspaceService workspaceService;
+    @Autowired
+    private DailyBusinessStatsService dailyBusinessStatsService;
+    @Autowired
+    private ReportExportProperties reportExportProperties;
 
     /**
      * 统计指定时间区间内的营业额数据
@@ -54,14 +75,11 @@ public class ReportServiceImpl implements ReportService {
      */
     public TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end) {
         List<LocalDate> dateList = getDateList(begin, end);
+        // 每天的营业数据 已结束的日期读取汇总表 没有订单的日期为0
+        List<DailyBusinessStats> statsList = dailyBusinessStatsService.listByDate(begin, end);
         // 每天的营业额
         List<Double> turnoverList = new ArrayList();
-        dateList.forEach(date -> {
-            Map todayMap = encapsulationMap(date, date, Orders.COMPLETED);
-            Double turnover = orderMapper.sumByMap(todayMap);
-            turnover = turnover == null ? 0.0 : turnover;
-            turnoverList.add(turnover);
-        });
+        statsList.forEach(stats -> turnoverList.add(stats.getTurnover().doubleValue()));
         return TurnoverReportVO.builder()
                 .dateList(StringUtils.join(dateList, ","))
                 .turnoverList(StringUtils.join(turnoverList, ","))
@@ -77,20 +95,23 @@ public class ReportServiceImpl implements ReportService {
      */
     public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
         List<LocalDate> dateList = getDateList(begin, end);
+        // 开始日期之前的用户总量
+        Map map = new HashMap();
+        map.put("end", LocalDateTime.of(begin, LocalTime.MIN));
+        Integer totalUser = userMapper.countByMap(map);
+        totalUser = totalUser == null ? 0 : totalUser;
+        // 每天的新增用户数
+        List<DailyBusinessStats> statsList = dailyBusinessStatsService.listByDate(begin, end);
+
         List<Integer> totalUserList = new ArrayList();
         List<Integer> newUserList = new ArrayList<>();
-        dateList.forEach(date -> {
-            Map intervalMap = encapsulationMap(null, date, null);
-            // 获取用户总量
-            Integer totalUser = userMapper.countByMap(intervalMap);
-            totalUser = totalUser == null ? 0 : totalUser;
-            // 获取当天新用户数
-            intervalMap.put("begin", LocalDateTime.of(date, LocalTime.MIN));
-            Integer newUser = userMapper.countByMap(intervalMap);
-            newUser = newUser == null ? 0 : newUser;
+        for (DailyBusinessStats stats : statsList) {
+            Integer newUser = stats.getNewUsers();
+            // 用户总量为之前的总量累加当天新增
+            totalUser += newUser;
             newUserList.add(newUser);
             totalUserList.add(totalUser);
-        });
+        }
         return UserReportVO.builder()
                 .dateList(StringUtils.join(dateList, ","))
                 .totalUserList(StringUtils.join(totalUserList, ","))
@@ -108,24 +129,12 @@ public class ReportServiceImpl implements ReportService {
         List<LocalDate> dateList = getDateList(begin, end);
         List<Integer> orderCountList = new ArrayList();// 每日订单数
         List<Integer> validOrderCountList = new ArrayList(); // 每日有效订单数
-        dateList.forEach(date -> {
-            Map todayMap = encapsulationMap(date, date, null);
-            // 每日订单数
-            Integer orderCount = orderMapper.countByMap(todayMap);
-            orderCountList.add(orderCount);
-            // 每日有效订单数
-            todayMap.put("status", Orders.COMPLETED);
-            Integer validOrderCount = orderMapper.countByMap(todayMap);
-            validOrderCountList.add(validOrderCount);
+        List<DailyBusinessStats> statsList = dailyBusinessStatsService.listByDate(begin, end);
+        statsList.forEach(stats -> {
+            orderCountList.add(stats.getTotalOrderCount());
+            validOrderCountList.add(stats.getValidOrderCount());
         });
 
-//        Map intervalMap = encapsulationMap(begin, end, null);
-//        // 订单总数
-//        Integer totalOrderCount = orderMapper.countByMap(intervalMap);
-//        // 有效订单数
-//        intervalMap.put("status", Orders.COMPLETED);
-//        Integer validOrderCount = orderMapper.countByMap(intervalMap);
-
         // 订单完成率
         Integer totalOrderCount = orderCountList.stream().reduce(Integer::sum).get();
         Integer validOrderCount = validOrderCountList.stream().reduce(Integer::sum).get();
@@ -180,63 +189,150 @@ public class ReportServiceImpl implements ReportService {
     /**
      * 到处运营数据报表
      *
+     * @param begin
+     * @param end
      * @param response
      */
     @Override
-    public void exportBusinessData(HttpServletResponse response) {
-        // 1.查询数据库获取营业数据 -- 查询最近30天的营业数据
-        LocalDate dateBegin = LocalDate.now().minusDays(30);
-        LocalDate dateEnd = LocalDate.now().minusDays(1);
+    public void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response) {
+        // 未指定时间时默认导出最近30天的营业数据
+        LocalDate dateBegin = begin == null ? LocalDate.now().minusDays(30) : begin;
+        LocalDate dateEnd = end == null ? LocalDate.now().minusDays(1) : end;
+        checkExportDateRange(dateBegin, dateEnd);
 
-        // 查询概览数据
-        BusinessDataVO businessDataVO = workspaceService.getBusinessData(LocalDateTime.of(dateBegin, LocalTime.MIN), LocalDateTime.of(dateEnd, LocalTime.MAX));
-        // 2.通过POI将营业数据写入excel文件中
-        InputStream in = this.getClass().getClassLoader().getResourceAsStream("template/运营数据报表模板.xlsx");// 从类路径下读取资源 返回输入流对象
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
         try {
-            // 基于模板文件来创建一个新的excel文件
-            XSSFWorkbook excel = new XSSFWorkbook(in);
-            // 获取sheet标签页
-            XSSFSheet sheet = excel.getSheetAt(0);
-            // 填充数据 -- 查询时间
-            sheet.getRow(1).getCell(1).setCellValue("时间: " + dateBegin + "至" + dateEnd);
-            // 填充数据 -- 营业额
-            XSSFRow row = sheet.getRow(3);
-            row.getCell(2).setCellValue(businessDataVO.getTurnover());
-            row.getCell(4).setCellValue(businessDataVO.getOrderCompletionRate());
-            row.getCell(6).setCellValue(businessDataVO.getNewUsers());
-            row = sheet.getRow(4);
-            row.getCell(2).setCellValue(businessDataVO.getValidOrderCount());
-            row.getCell(4).setCellValue(businessDataVO.getUnitPrice());
+            // 通过输出流将excel文件直接写到客户端浏览器
+            ServletOutputStream out = response.getOutputStream();
+            writeBusinessData(dateBegin, dateEnd, out);
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            List<LocalDate> dateList = getDateList(dateBegin, dateEnd);
-            for (int i = 0; i < 30; i++) {
-                // 查询明细数据 -- 每天的营业额 有效订单 订单完成率 平局客单价 新增用户数
-                LocalDate date = dateList.get(i);
-                // 查询某一天的营业数据
-                BusinessDataVO businessDate = workspaceService.getBusinessData(LocalDateTime.of(date, LocalTime.MIN), LocalDateTime.of(date, LocalTime.MAX));
+    /**
+     * 校验导出运营数据报表的日期区间
+     *
+     * @param begin
+     * @param end
+     */
+    @Override
+    public void checkExportDateRange(LocalDate begin, LocalDate end) {
+        if (begin.isAfter(end)) {
+            throw new ReportExportException(MessageConstant.REPORT_DATE_ERROR);
+        }
+        // 导出耗时和文件大小随天数增长 限制单次导出的天数
+        if (ChronoUnit.DAYS.between(begin, end) + 1 > reportExportProperties.getMaxDays()) {
+            throw new ReportExportException(MessageConstant.REPORT_DATE_RANGE_TOO_LARGE);
+        }
+    }
 
-                row = sheet.getRow(i + 7);
-                // 绑定营业数据
-                row.getCell(1).setCellValue(date.toString());
-                row.getCell(2).setCellValue(businessDate.getTurnover());
-                row.getCell(3).setCellValue(businessDate.getValidOrderCount());
-                row.getCell(4).setCellValue(businessDate.getOrderCompletionRate());
-                row.getCell(5).setCellValue(businessDate.getUnitPrice());
-                row.getCell(6).setCellValue(businessDate.getNewUsers());
+    /**
+     * 基于模板将指定时间区间的营业数据以流的方式写入excel
+     *
+     * @param begin
+     * @param end
+     * @param out
+     * @throws IOException
+     */
+    @Override
+    public void writeBusinessData(LocalDate begin, LocalDate end, OutputStream out) throws IOException {
+        // 1.一次查询出区间内每天的营业数据
+        List<DailyBusinessStats> statsList = dailyBusinessStatsService.listByDate(begin, end);
+        BusinessDataVO businessDataVO = dailyBusinessStatsService.sumBusinessData(statsList);
+
+        // 2.通过POI将营业数据写入excel文件中
+        // 从类路径下读取资源 基于模板文件来创建一个新的excel文件 模板只有几十行 概览数据直接写入模板
+        try (InputStream in = this.getClass().getClassLoader().getResourceAsStream("template/运营数据报表模板.xlsx");
+             XSSFWorkbook template = new XSSFWorkbook(in)) {
+            fillBusinessData(template, begin, end, businessDataVO, statsList, out);
+        }
+    }
+
+    /**
+     * 基于模板写入概览数据 明细行流式写入输出流
+     *
+     * @param template
+     * @param begin
+     * @param end
+     * @param businessDataVO
+     * @param statsList
+     * @param out
+     * @throws IOException
+     */
+    private void fillBusinessData(XSSFWorkbook template, LocalDate begin, LocalDate end, BusinessDataVO businessDataVO,
+                                  List<DailyBusinessStats> statsList, OutputStream out) throws IOException {
+        XSSFSheet templateSheet = template.getSheetAt(0);
+        // 填充数据 -- 查询时间
+        templateSheet.getRow(1).getCell(1).setCellValue("时间: " + begin + "至" + end);
+        // 填充数据 -- 营业额
+        XSSFRow row = templateSheet.getRow(3);
+        row.getCell(2).setCellValue(businessDataVO.getTurnover());
+        row.getCell(4).setCellValue(businessDataVO.getOrderCompletionRate());
+        row.getCell(6).setCellValue(businessDataVO.getNewUsers());
+        row = templateSheet.getRow(4);
+        row.getCell(2).setCellValue(businessDataVO.getValidOrderCount());
+        row.getCell(4).setCellValue(businessDataVO.getUnitPrice());
+
+        // 记录明细行的样式后删除模板中的明细行 明细行改为流式写入
+        XSSFRow detailRow = templateSheet.getRow(DETAIL_START_ROW);
+        short detailRowHeight = detailRow.getHeight();
+        CellStyle[] detailStyles = new CellStyle[DETAIL_LAST_CELL + 1];
+        for (int i = DETAIL_FIRST_CELL; i <= DETAIL_LAST_CELL; i++) {
+            detailStyles[i] = detailRow.getCell(i).getCellStyle();
+        }
+        for (int i = templateSheet.getLastRowNum(); i >= DETAIL_START_ROW; i--) {
+            XSSFRow templateRow = templateSheet.getRow(i);
+            if (templateRow != null) {
+                templateSheet.removeRow(templateRow);
             }
-            // 3.通过输出流将excel文件下载到客户端浏览器
-            ServletOutputStream out = response.getOutputStream();
-            excel.write(out);
+        }
 
-            // 关闭资源
-            out.close();
-            excel.close();
+        // 内存中只保留最近的部分行 其余行写入临时文件 堆内存不随导出的天数增长
+        try (SXSSFWorkbook excel = new SXSSFWorkbook(template, SXSSFWorkbook.DEFAULT_WINDOW_SIZE)) {
+            excel.setCompressTempFiles(true);
+            try {
+                SXSSFSheet sheet = excel.getSheetAt(0);
+                for (int i = 0; i < statsList.size(); i++) {
+                    // 明细数据 -- 每天的营业额 有效订单 订单完成率 平局客单价 新增用户数
+                    DailyBusinessStats stats = statsList.get(i);
+                    BusinessDataVO businessDate = dailyBusinessStatsService.buildBusinessData(stats.getTurnover().doubleValue(),
+                            stats.getTotalOrderCount(), stats.getValidOrderCount(), stats.getNewUsers());
 
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+                    SXSSFRow sxssfRow = sheet.createRow(DETAIL_START_ROW + i);
+                    sxssfRow.setHeight(detailRowHeight);
+                    // 绑定营业数据
+                    createCell(sxssfRow, 1, detailStyles).setCellValue(stats.getStatDate().toString());
+                    createCell(sxssfRow, 2, detailStyles).setCellValue(businessDate.getTurnover());
+                    createCell(sxssfRow, 3, detailStyles).setCellValue(businessDate.getValidOrderCount());
+                    createCell(sxssfRow, 4, detailStyles).setCellValue(businessDate.getOrderCompletionRate());
+                    createCell(sxssfRow, 5, detailStyles).setCellValue(businessDate.getUnitPrice());
+                    createCell(sxssfRow, 6, detailStyles).setCellValue(businessDate.getNewUsers());
+                }
+                // 3.将excel文件写入输出流
+                excel.write(out);
+            } finally {
+                // 删除临时文件
+                excel.dispose();
+            }
         }
     }
 
+    /**
+     * 创建单元格并设置模板中的样式
+     *
+     * @param row
+     * @param column
+     * @param styles
+     * @return
+     */
+    private Cell createCell(Row row, int column, CellStyle[] styles) {
+        Cell cell = row.createCell(column);
+        cell.setCellStyle(styles[column]);
+        return cell;
+    }
+
     /**
      * 封装日期列表
      *
@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuCacheInvalidator;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -21,6 +22,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -33,6 +35,9 @@ public class SetmealServiceImpl implements SetmealService {
     @Autowired
     private SetmealDishMapper setmealDishMapper;
 
+    @Autowired
+    private MenuCacheInvalidator menuCacheInvalidator;
+
     /**
      * 新增套餐，同时需要保存套餐和菜品的关联关系
      * @param setmealDTO
@@ -54,6 +59,7 @@ public class SetmealServiceImpl implements SetmealService {
         });
         // 保存套餐和菜品的关联关系
         setmealDishMapper.insertBatch(setmealDishes);
+        menuCacheInvalidator.evictSetmeal(setmealDTO.getCategoryId());
     }
 
     /**
@@ -82,12 +88,14 @@ public class SetmealServiceImpl implements SetmealService {
     @Transactional // 保持事务的一致性
     public void deleteBatch(List<Long> ids) {
         if (!ids.isEmpty()){
+            List<Long> categoryIds = new ArrayList<>();
             // 判断删除的套餐中是否存在起售状态的套餐
             ids.forEach(setmealId -> {
                 Setmeal setmeal = setmealMapper.getById(setmealId);
                 if (setmeal.getStatus() == StatusConstant.ENABLE){
                     throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
                 }
+                categoryIds.add(setmeal.getCategoryId());
 //            // 删除套餐表中的数据
 //            setmealMapper.deleteById(setmealId);
 //            // 删除套餐菜品表中的数据
@@ -99,6 +107,9 @@ public class SetmealServiceImpl implements SetmealService {
 
             // 批量删除套餐菜品表中的数据
             setmealDishMapper.deleteBatchBySetmealIds(ids);
+
+            // 删除套餐所属分类的缓存
+            menuCacheInvalidator.evictSetmeal(categoryIds);
         }
     }
 
@@ -128,6 +139,10 @@ public class SetmealServiceImpl implements SetmealService {
     @Transactional
     @Override
     public void update(SetmealDTO setmealDTO) {
+        // 修改前后所属分类的缓存都需要删除
+        Setmeal setmealDB = setmealMapper.getById(setmealDTO.getId());
+        menuCacheInvalidator.evictSetmeal(setmealDB.getCategoryId(), setmealDTO.getCategoryId());
+
         Setmeal setmeal = new Setmeal();
         BeanUtils.copyProperties(setmealDTO, setmeal);
 
@@ -157,6 +172,8 @@ public class SetmealServiceImpl implements SetmealService {
     public void startOrStop(Integer status, Long id) {
         // 根据套餐的id设置套餐的售卖状态
         setmealMapper.startOrStop(status,id);
+        Setmeal setmeal = setmealMapper.getById(id);
+        menuCacheInvalidator.evictSetmeal(setmeal.getCategoryId());
     }
 
     /**
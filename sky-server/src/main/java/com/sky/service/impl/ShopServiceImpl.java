@@ -0,0 +1,67 @@
+package com.sky.service.impl;
+
+import com.sky.constant.StatusConstant;
+import com.sky.service.ShopService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+
+@Service
+@Slf4j
+public class ShopServiceImpl implements ShopService {
+
+    private static final String KEY = "SHOP_STATUS";
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 设置店铺的营业状态
+     * @param status 1营业中 0打烊中
+     */
+    @Override
+    public void setStatus(Integer status) {
+        redisTemplate.opsForValue().set(KEY, status);
+    }
+
+    /**
+     * 获取店铺的营业状态
+     * @return
+     */
+    @Override
+    public Integer getStatus() {
+        try {
+            return (Integer) redisTemplate.opsForValue().get(KEY);
+        } catch (SerializationException e) {
+            // 切换value序列化方式之前写入的值 按JDK序列化读取后以当前方式重新写入
+            Integer status = readJdkStatus();
+            log.warn("店铺营业状态的序列化方式已变更，重新写入: {}", status);
+            redisTemplate.opsForValue().set(KEY, status);
+            return status;
+        }
+    }
+
+    /**
+     * 按JDK序列化读取营业状态 无法读取时视为打烊
+     * @return
+     */
+    private Integer readJdkStatus() {
+        byte[] bytes = (byte[]) redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.get(KEY.getBytes(StandardCharsets.UTF_8)));
+        try {
+            Object value = new JdkSerializationRedisSerializer(getClass().getClassLoader()).deserialize(bytes);
+            if (value instanceof Integer) {
+                return (Integer) value;
+            }
+        } catch (SerializationException e) {
+            log.error("店铺营业状态无法读取", e);
+        }
+        return StatusConstant.DISABLE;
+    }
+}
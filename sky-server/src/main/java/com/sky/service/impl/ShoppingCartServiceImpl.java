@@ -1,5 +1,6 @@
 package com.sky.service.impl;
 
+import com.alibaba.fastjson.JSON;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
@@ -8,24 +9,89 @@ import com.sky.entity.ShoppingCart;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.ShoppingCartProperties;
 import com.sky.service.ShoppingCartService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * 购物车保存在Redis的hash中 key: shopping_cart:用户id
+ * field: n:商品 保存数量 m:商品 保存商品信息的json _loaded 表示已从数据库加载过
+ * 修改过的购物车记录在 shopping_cart:dirty 集合中 由定时任务写回shopping_cart表
+ * 不使用Redis时直接读写shopping_cart表 数量通过 insert ... on duplicate key update 原子修改
+ */
 @Service
 @Slf4j
 public class ShoppingCartServiceImpl implements ShoppingCartService {
+
+    private static final String CART_KEY_PREFIX = "shopping_cart:";
+    private static final String DIRTY_KEY = "shopping_cart:dirty";
+    private static final String NUMBER_PREFIX = "n:";
+    private static final String META_PREFIX = "m:";
+    private static final String LOADED_FIELD = "_loaded";
+
+    // 购物车不存在时写入从数据库加载的数据 ARGV: 过期秒数 field1 value1 field2 value2 ...
+    private static final DefaultRedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then " +
+            "  redis.call('expire', KEYS[1], ARGV[1]) " +
+            "  return 0 " +
+            "end " +
+            "redis.call('hset', KEYS[1], unpack(ARGV, 2)) " +
+            "redis.call('expire', KEYS[1], ARGV[1]) " +
+            "return 1", Long.class);
+
+    // 增加商品数量 商品信息为空串且商品不存在时返回-1 ARGV: 数量field 信息field 信息json 增加的数量 过期秒数
+    private static final DefaultRedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[3] == '' then " +
+            "  if redis.call('hexists', KEYS[1], ARGV[2]) == 0 then return -1 end " +
+            "else " +
+            "  redis.call('hsetnx', KEYS[1], ARGV[2], ARGV[3]) " +
+            "end " +
+            "local n = redis.call('hincrby', KEYS[1], ARGV[1], ARGV[4]) " +
+            "redis.call('expire', KEYS[1], ARGV[5]) " +
+            "return n", Long.class);
+
+    // 商品数量减1 减到0时删除商品 商品不存在时返回-1 ARGV: 数量field 信息field 过期秒数
+    private static final DefaultRedisScript<Long> DECREASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then return -1 end " +
+            "local n = redis.call('hincrby', KEYS[1], ARGV[1], -1) " +
+            "if n <= 0 then redis.call('hdel', KEYS[1], ARGV[1], ARGV[2]) end " +
+            "redis.call('expire', KEYS[1], ARGV[3]) " +
+            "return n", Long.class);
+
+    // 清空购物车 保留已加载标记 避免再次从数据库加载未写回的旧数据 ARGV: 过期秒数
+    private static final DefaultRedisScript<Long> CLEAN_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('del', KEYS[1]) " +
+            "redis.call('hset', KEYS[1], '" + LOADED_FIELD + "', '1') " +
+            "redis.call('expire', KEYS[1], ARGV[1]) " +
+            "return 1", Long.class);
+
     @Autowired
     private ShoppingCartMapper shoppingCartMapper;
     @Autowired
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     /**
      * 添加购物车
@@ -37,20 +103,22 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
 
-        Long userId = BaseContext.getCurrentId();
-        shoppingCart.setUserId(userId); // 从token中获取用户ID
+        Long userId = BaseContext.getCurrentId(); // 从token中获取用户ID
+        if (!shoppingCartProperties.isRedisEnabled()) {
+            // 直接写入数据库 商品已存在时数量加1
+            shoppingCart.setUserId(userId);
+            shoppingCartMapper.insertOrIncrease(shoppingCart);
+            return;
+        }
 
-        // 判断当前插入购物车的商品是否存在
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
+        String key = loadCart(userId);
+        String item = getItem(shoppingCart);
 
         // 如果当前商品存在 只需要将商品数量加1
-        if (list != null && !list.isEmpty()) {
-            ShoppingCart cart = list.get(0);
-            cart.setNumber(cart.getNumber() + 1);
-            // 修改数据库中的数据
-            shoppingCartMapper.updateNumberById(cart);
-        } else {
-            // 如果当前商品不存在 需要插入一条购物车数据
+        Long number = stringRedisTemplate.execute(ADD_SCRIPT, Collections.singletonList(key),
+                NUMBER_PREFIX + item, META_PREFIX + item, "", "1", expireSeconds());
+        if (number == null || number < 0) {
+            // 如果当前商品不存在 需要查询商品信息后添加到购物车
 
             // 判断本次添加到购物车中的商品是菜品还是套餐
             Long dishId = shoppingCart.getDishId();
@@ -68,10 +136,11 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
                 shoppingCart.setAmount(setmeal.getPrice());
                 shoppingCart.setImage(setmeal.getImage());
             }
-            shoppingCart.setNumber(1);
             shoppingCart.setCreateTime(LocalDateTime.now());
-            shoppingCartMapper.insert(shoppingCart);
+            stringRedisTemplate.execute(ADD_SCRIPT, Collections.singletonList(key),
+                    NUMBER_PREFIX + item, META_PREFIX + item, toMeta(shoppingCart), "1", expireSeconds());
         }
+        markDirty(userId);
     }
 
     /**
@@ -81,19 +150,36 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Override
     public List<ShoppingCart> showShoppingCart() {
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingcart = ShoppingCart.builder()
-                .userId(userId)
-                .build();
-        return shoppingCartMapper.list(shoppingcart);
+        if (!shoppingCartProperties.isRedisEnabled()) {
+            return shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+        }
+
+        String key = loadCart(userId);
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(key);
+        return toCartList(userId, entries);
     }
 
     /**
-     * 清空购物车
+     * 清空购物车 在事务中调用时等事务提交后再清空
      */
     @Override
     public void cleanShoppingCart() {
         Long userId = BaseContext.getCurrentId();
-        shoppingCartMapper.deleteByUserId(userId);
+        if (!shoppingCartProperties.isRedisEnabled()) {
+            shoppingCartMapper.deleteByUserId(userId);
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cleanShoppingCart(userId);
+                }
+            });
+        } else {
+            cleanShoppingCart(userId);
+        }
     }
 
     /**
@@ -105,18 +191,195 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     public void decrease(ShoppingCartDTO shoppingCartDTO) {
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
-        shoppingCart.setUserId(BaseContext.getCurrentId());
+        Long userId = BaseContext.getCurrentId();
+        if (!shoppingCartProperties.isRedisEnabled()) {
+            // 数量大于1时减1 否则删除该商品
+            shoppingCart.setUserId(userId);
+            if (shoppingCartMapper.decreaseNumber(shoppingCart) == 0) {
+                shoppingCartMapper.deleteLastOne(shoppingCart);
+            }
+            return;
+        }
+
+        String key = loadCart(userId);
+        String item = getItem(shoppingCart);
+
+        // 数量减到0时删除该商品
+        Long number = stringRedisTemplate.execute(DECREASE_SCRIPT, Collections.singletonList(key),
+                NUMBER_PREFIX + item, META_PREFIX + item, expireSeconds());
+        if (number != null && number >= 0) {
+            markDirty(userId);
+        }
+    }
+
+    /**
+     * 批量添加购物车 已存在的商品累加数量
+     *
+     * @param shoppingCartList
+     */
+    @Override
+    public void addShoppingCartItems(List<ShoppingCart> shoppingCartList) {
+        Long userId = BaseContext.getCurrentId();
+        if (!shoppingCartProperties.isRedisEnabled()) {
+            shoppingCartList.forEach(shoppingCart -> {
+                shoppingCart.setUserId(userId);
+                shoppingCart.setCreateTime(LocalDateTime.now());
+            });
+            shoppingCartMapper.insertOrIncreaseBatch(shoppingCartList);
+            return;
+        }
+
+        String key = loadCart(userId);
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            String item = getItem(shoppingCart);
+            stringRedisTemplate.execute(ADD_SCRIPT, Collections.singletonList(key),
+                    NUMBER_PREFIX + item, META_PREFIX + item, toMeta(shoppingCart),
+                    String.valueOf(shoppingCart.getNumber()), expireSeconds());
+        }
+        markDirty(userId);
+    }
+
+    /**
+     * 将修改过的购物车写回数据库
+     */
+    @Override
+    public void flushDirtyCarts() {
+        List<String> userIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, shoppingCartProperties.getFlushBatchSize());
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        log.info("购物车写回数据库: {}", userIds.size());
+        for (String userId : userIds) {
+            try {
+                flushCart(Long.valueOf(userId));
+            } catch (Exception e) {
+                // 写回失败 放回集合等待下次写回
+                log.error("购物车写回数据库失败: {}", userId, e);
+                stringRedisTemplate.opsForSet().add(DIRTY_KEY, userId);
+            }
+        }
+    }
+
+    /**
+     * 用Redis中的购物车覆盖数据库中该用户的购物车
+     *
+     * @param userId
+     */
+    private void flushCart(Long userId) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(CART_KEY_PREFIX + userId);
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        List<ShoppingCart> shoppingCartList = toCartList(userId, entries);
+        transactionTemplate.execute(status -> {
+            shoppingCartMapper.deleteByUserId(userId);
+            if (!shoppingCartList.isEmpty()) {
+                shoppingCartMapper.insertBatch(shoppingCartList);
+            }
+            return null;
+        });
+    }
+
+    private void cleanShoppingCart(Long userId) {
+        stringRedisTemplate.execute(CLEAN_SCRIPT, Collections.singletonList(CART_KEY_PREFIX + userId), expireSeconds());
+        markDirty(userId);
+    }
+
+    /**
+     * Redis中没有当前用户的购物车时 从数据库加载
+     *
+     * @param userId
+     * @return 购物车的key
+     */
+    private String loadCart(Long userId) {
+        String key = CART_KEY_PREFIX + userId;
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(key))) {
+            return key;
+        }
+
+        List<ShoppingCart> list = shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+        List<Object> args = new ArrayList<>();
+        args.add(expireSeconds());
+        args.add(LOADED_FIELD);
+        args.add("1");
+        for (ShoppingCart cart : list) {
+            String item = getItem(cart);
+            args.add(NUMBER_PREFIX + item);
+            args.add(String.valueOf(cart.getNumber()));
+            args.add(META_PREFIX + item);
+            args.add(toMeta(cart));
+        }
+        stringRedisTemplate.execute(LOAD_SCRIPT, Collections.singletonList(key), args.toArray());
+        return key;
+    }
+
+    /**
+     * 将hash中的数据转换为购物车列表 按加入购物车的时间排序
+     *
+     * @param userId
+     * @param entries
+     * @return
+     */
+    private List<ShoppingCart> toCartList(Long userId, Map<Object, Object> entries) {
+        List<ShoppingCart> list = new ArrayList<>();
+        entries.forEach((field, value) -> {
+            String name = (String) field;
+            if (!name.startsWith(META_PREFIX)) {
+                return;
+            }
+            Object number = entries.get(NUMBER_PREFIX + name.substring(META_PREFIX.length()));
+            if (number == null) {
+                return;
+            }
+            ShoppingCart shoppingCart = JSON.parseObject((String) value, ShoppingCart.class);
+            shoppingCart.setUserId(userId);
+            shoppingCart.setNumber(Integer.valueOf((String) number));
+            list.add(shoppingCart);
+        });
+        list.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.naturalOrder())));
+        return list;
+    }
 
-//        List<ShoppingCart> cartList = shoppingCartMapper.list(shoppingCart);
-//        shoppingCart = cartList.get(0);
-        shoppingCart = shoppingCartMapper.list(shoppingCart).get(0);
+    /**
+     * 商品在hash中的标识 菜品: d菜品id:口味 套餐: s套餐id
+     *
+     * @param shoppingCart
+     * @return
+     */
+    private String getItem(ShoppingCart shoppingCart) {
+        if (shoppingCart.getDishId() != null) {
+            String dishFlavor = shoppingCart.getDishFlavor() == null ? "" : shoppingCart.getDishFlavor();
+            return "d" + shoppingCart.getDishId() + ":" + dishFlavor;
+        }
+        return "s" + shoppingCart.getSetmealId();
+    }
+
+    /**
+     * 商品信息 不包含id、用户id和数量
+     *
+     * @param shoppingCart
+     * @return
+     */
+    private String toMeta(ShoppingCart shoppingCart) {
+        ShoppingCart meta = ShoppingCart.builder()
+                .name(shoppingCart.getName())
+                .dishId(shoppingCart.getDishId())
+                .setmealId(shoppingCart.getSetmealId())
+                .dishFlavor(shoppingCart.getDishFlavor())
+                .amount(shoppingCart.getAmount())
+                .image(shoppingCart.getImage())
+                .createTime(shoppingCart.getCreateTime() == null ? LocalDateTime.now() : shoppingCart.getCreateTime())
+                .build();
+        return JSON.toJSONString(meta);
+    }
 
-        int num = shoppingCart.getNumber() - 1;
-        if (num == 0) {
-            shoppingCartMapper.decreaseById(shoppingCart.getId());
-        }else {
-            shoppingCart.setNumber(num);
-            shoppingCartMapper.updateNumberById(shoppingCart);
+    private void markDirty(Long userId) {
+        if (shoppingCartProperties.isWriteBehind()) {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(userId));
         }
     }
+
+    private String expireSeconds() {
+        return String.valueOf(shoppingCartProperties.getExpireDays() * 24L * 3600);
+    }
 }
@@ -1,11 +1,13 @@
 package com.sky.service.impl;
 
 import com.sky.constant.StatusConstant;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.service.DailyBusinessStatsService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
@@ -17,6 +19,7 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -31,6 +34,8 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private DailyBusinessStatsService dailyBusinessStatsService;
 
     /**
      * 根据时间段统计营业数据
@@ -47,6 +52,23 @@ public class WorkspaceServiceImpl implements WorkspaceService {
          * 新增用户：当日新增用户的数量
          */
 
+        // 不是按整天查询时直接统计订单表和用户表
+        if (!begin.toLocalTime().equals(LocalTime.MIN) || !end.toLocalTime().equals(LocalTime.MAX)) {
+            return getBusinessDataFromOrders(begin, end);
+        }
+
+        // 按整天查询时累加每天的营业数据 已结束的日期读取汇总表 当天实时统计
+        List<DailyBusinessStats> statsList = dailyBusinessStatsService.listByDate(begin.toLocalDate(), end.toLocalDate());
+        return dailyBusinessStatsService.sumBusinessData(statsList);
+    }
+
+    /**
+     * 根据订单表和用户表统计任意时间段的营业数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    private BusinessDataVO getBusinessDataFromOrders(LocalDateTime begin, LocalDateTime end) {
         Map map = new HashMap();
         map.put("begin",begin);
         map.put("end",end);
@@ -62,29 +84,12 @@ public class WorkspaceServiceImpl implements WorkspaceService {
         //有效订单数
         Integer validOrderCount = orderMapper.countByMap(map);
 
-        Double unitPrice = 0.0;
-
-        Double orderCompletionRate = 0.0;
-        if(totalOrderCount != 0 && validOrderCount != 0){
-            //订单完成率
-            orderCompletionRate = validOrderCount.doubleValue() / totalOrderCount;
-            //平均客单价
-            unitPrice = turnover / validOrderCount;
-        }
-
         //新增用户数
         Integer newUsers = userMapper.countByMap(map);
 
-        return BusinessDataVO.builder()
-                .turnover(turnover)
-                .validOrderCount(validOrderCount)
-                .orderCompletionRate(orderCompletionRate)
-                .unitPrice(unitPrice)
-                .newUsers(newUsers)
-                .build();
+        return dailyBusinessStatsService.buildBusinessData(turnover, totalOrderCount, validOrderCount, newUsers);
     }
 
-
     /**
      * 查询订单管理数据
      *
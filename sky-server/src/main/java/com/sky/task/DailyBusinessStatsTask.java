@@ -0,0 +1,38 @@
+package com.sky.task;
+
+import com.sky.annotation.DistributedLock;
+import com.sky.service.DailyBusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 定时任务类 汇总每日营业数据
+ */
+@Component
+@Slf4j
+public class DailyBusinessStatsTask {
+
+    // 每次重新汇总最近多少天的数据 用来修正增量维护遗漏的变化
+    @Value("${sky.report.stats-refresh-days:7}")
+    private int refreshDays;
+
+    @Autowired
+    private DailyBusinessStatsService dailyBusinessStatsService;
+
+    /**
+     * 汇总最近几天的营业数据 在派送中订单自动完成之后执行
+     */
+    @Scheduled(cron = "0 30 1 * * ?")
+    @DistributedLock(minLeaseMillis = 30 * 1000)
+    public void refreshDailyBusinessStats() {
+        LocalDate end = LocalDate.now().minusDays(1);
+        LocalDate begin = end.minusDays(refreshDays - 1);
+        log.info("定时汇总每日营业数据: {} 至 {}", begin, end);
+        dailyBusinessStatsService.refresh(begin, end);
+    }
+}
@@ -1,15 +1,22 @@
 package com.sky.task;
 
+import com.sky.annotation.DistributedLock;
 import com.sky.constant.MessageConstant;
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderTaskProperties;
+import com.sky.service.DailyBusinessStatsService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * 定时任务类 定时处理订单状态
@@ -20,40 +27,88 @@ public class OrderTeak {
 
     @Autowired
     private OrderMapper orderMapper;
+    @Autowired
+    private DailyBusinessStatsService dailyBusinessStatsService;
+    @Autowired
+    private OrderTaskProperties orderTaskProperties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
-     * 处理超时订单
+     * 兜底处理超时订单 超时订单平时由延迟队列及时取消 延迟队列数据丢失时由此处取消
+     * 分批执行update 每批单独提交 避免长时间锁定订单表
      */
-    @Scheduled(cron = "0 0/5 * * * ?")
+    @Scheduled(cron = "${sky.order-task.timeout-sweep-cron:0 0/30 * * * ?}")
+    @DistributedLock(minLeaseMillis = 30 * 1000)
     public void processTimeOutOrder() {
         log.info("定时处理超时订单: {}", LocalDateTime.now());
-        LocalDateTime time = LocalDateTime.now().plusMinutes(-15);
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT,time);
-        if (ordersList != null && ordersList.size() > 0) {
-            for (Orders orders : ordersList) {
-                orders.setStatus(Orders.CANCELLED);
-                orders.setCancelTime(LocalDateTime.now());
-                orders.setCancelReason(MessageConstant.ORDER_TIME_OUT);
-                orderMapper.update(orders);
-            }
-        }
+        long start = System.nanoTime();
+        LocalDateTime time = LocalDateTime.now().minusMinutes(orderTaskProperties.getPaymentTimeoutMinutes());
+        int batchSize = orderTaskProperties.getBatchSize();
+        Orders orders = Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason(MessageConstant.ORDER_TIME_OUT)
+                .cancelTime(LocalDateTime.now())
+                .build();
+        int total = 0;
+        int rows;
+        do {
+            rows = orderMapper.updateByStatusAndOrderTimeLT(orders, Orders.PENDING_PAYMENT, time, batchSize);
+            total += rows;
+        } while (rows > 0 && rows == batchSize);
+
+        record("timeout_cancel", total, start);
+        log.info("取消超时订单: {}个", total);
     }
 
 
     /**
-     * 处理处于派送状态中的订单
+     * 处理处于派送状态中的订单 分批锁定、修改订单并修正已汇总的营业数据 每批一个事务 避免长时间锁定订单表
      */
-    @Scheduled(cron = "0 0 1 * * ? ")
+    @Scheduled(cron = "${sky.order-task.delivery-complete-cron:0 0 1 * * ?}")
+    @DistributedLock(minLeaseMillis = 30 * 1000)
     public void processDeliveryOrder(){
         log.info("处理处于派送状态中的订单, {}", LocalDateTime.now());
-        LocalDateTime time = LocalDateTime.now().plusHours(-1);
-        // 查询当前出入派送状态下的订单
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS,time);
-        if (ordersList != null && ordersList.size() > 0) {
-            for (Orders orders : ordersList) {
-                orders.setStatus(Orders.COMPLETED);
-                orderMapper.update(orders);
-            }
-        }
+        long start = System.nanoTime();
+        LocalDateTime time = LocalDateTime.now().minusMinutes(orderTaskProperties.getDeliveryCompleteMinutes());
+        int batchSize = orderTaskProperties.getBatchSize();
+        int total = 0;
+        Integer rows;
+        do {
+            rows = transactionTemplate.execute(status -> {
+                // 查询并锁定当前处于派送状态下的一批订单
+                List<Orders> ordersList = orderMapper.lockByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, time, batchSize);
+                if (ordersList.isEmpty()) {
+                    return 0;
+                }
+                List<Long> ids = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+                Orders orders = Orders.builder()
+                        .status(Orders.COMPLETED)
+                        .deliveryTime(LocalDateTime.now())
+                        .build();
+                orderMapper.updateByIdsAndStatus(orders, ids, Orders.DELIVERY_IN_PROGRESS);
+                // 之前日期的订单完成时 按日期合并修改已汇总的营业数据
+                dailyBusinessStatsService.ordersStatusChanged(ordersList, Orders.COMPLETED);
+                return ordersList.size();
+            });
+            total += rows;
+        } while (rows > 0 && rows == batchSize);
+
+        record("delivery_complete", total, start);
+        log.info("自动完成派送中的订单: {}个", total);
+    }
 
+    /**
+     * 记录定时任务处理的订单数和耗时
+     *
+     * @param task
+     * @param rows
+     * @param start
+     */
+    private void record(String task, int rows, long start) {
+        meterRegistry.counter("sky.order.task.rows", "task", task).increment(rows);
+        meterRegistry.timer("sky.order.task.duration", "task", task).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 }
@@ -0,0 +1,23 @@
+package com.sky.task;
+
+import com.sky.service.OrderTimeoutService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务类 取消延迟队列中到期未支付的订单
+ */
+@Component
+@Slf4j
+public class OrderTimeoutTask {
+
+    @Autowired
+    private OrderTimeoutService orderTimeoutService;
+
+    @Scheduled(fixedDelayString = "${sky.order-task.timeout-poll-interval:1000}")
+    public void processTimeoutQueue() {
+        orderTimeoutService.processDue();
+    }
+}
@@ -0,0 +1,23 @@
+package com.sky.task;
+
+import com.sky.service.RefundService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务类 处理待退款记录 包括事务提交后未能立即处理的和需要重试的
+ */
+@Component
+@Slf4j
+public class RefundTask {
+
+    @Autowired
+    private RefundService refundService;
+
+    @Scheduled(fixedDelayString = "${sky.refund.poll-interval:5000}")
+    public void processRefunds() {
+        refundService.processDueRefunds();
+    }
+}
@@ -0,0 +1,27 @@
+package com.sky.task;
+
+import com.sky.service.ReportExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务类 清理过期的报表导出任务和文件
+ */
+@Component
+@Slf4j
+public class ReportExportTask {
+
+    @Autowired
+    private ReportExportService reportExportService;
+
+    /**
+     * 每10分钟清理一次过期的导出任务
+     */
+    @Scheduled(cron = "0 0/10 * * * ?")
+    public void clearExpired() {
+        log.info("定时清理过期的报表导出任务");
+        reportExportService.clearExpired();
+    }
+}
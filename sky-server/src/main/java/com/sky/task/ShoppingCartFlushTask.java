@@ -0,0 +1,28 @@
+package com.sky.task;
+
+import com.sky.properties.ShoppingCartProperties;
+import com.sky.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务类 将Redis中修改过的购物车写回数据库
+ */
+@Component
+@Slf4j
+public class ShoppingCartFlushTask {
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+
+    @Scheduled(fixedDelayString = "${sky.shopping-cart.flush-interval:5000}")
+    public void flushShoppingCart() {
+        if (shoppingCartProperties.isRedisEnabled() && shoppingCartProperties.isWriteBehind()) {
+            shoppingCartService.flushDirtyCarts();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket消息广播 消息先发布到Redis频道 每个节点收到后推送给本节点订阅了消息主题的连接
+ * 消息带有全局递增的序号 客户端可以据此发现漏掉的消息
+ * 同一订单的同类消息在合并窗口内只推送最后一条 被合并的序号放在mergedSeqs中
+ */
+@Component
+@Slf4j
+public class WebSocketBroadcaster implements MessageListener, DisposableBean {
+
+    // 广播消息的全局序号
+    private static final String SEQUENCE_KEY = "ws:broadcast:seq";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private WebSocketServer webSocketServer;
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    // 等待合并推送的消息 合并key -> 消息 按收到的顺序排列
+    private final Map<String, JSONObject> pendingMessages = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "websocket-broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 向所有节点上订阅了主题的连接广播消息
+     *
+     * @param topic
+     * @param message
+     */
+    public void broadcast(String topic, Map<String, Object> message) {
+        JSONObject jsonObject = new JSONObject(message);
+        jsonObject.put("topic", topic);
+        try {
+            jsonObject.put("seq", stringRedisTemplate.opsForValue().increment(SEQUENCE_KEY));
+            stringRedisTemplate.convertAndSend(webSocketProperties.getBroadcastChannel(), jsonObject.toJSONString());
+        } catch (Exception e) {
+            log.error("发布WebSocket广播消息失败，只推送给当前节点的连接", e);
+            webSocketServer.sendToTopic(topic, jsonObject.toJSONString());
+        }
+    }
+
+    /**
+     * 收到Redis频道中的广播消息
+     *
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JSONObject jsonObject = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+        long coalesceMillis = webSocketProperties.getCoalesceMillis();
+        if (coalesceMillis <= 0) {
+            send(jsonObject);
+            return;
+        }
+
+        String key = jsonObject.getString("topic") + ":" + jsonObject.getString("type") + ":" + jsonObject.getString("orderId");
+        synchronized (pendingMessages) {
+            JSONObject previous = pendingMessages.remove(key);
+            if (previous != null) {
+                JSONArray mergedSeqs = previous.getJSONArray("mergedSeqs");
+                if (mergedSeqs == null) {
+                    mergedSeqs = new JSONArray();
+                }
+                mergedSeqs.add(previous.getLong("seq"));
+                jsonObject.put("mergedSeqs", mergedSeqs);
+            }
+            pendingMessages.put(key, jsonObject);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                flushExecutor.schedule(this::flush, coalesceMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 推送合并窗口内收到的消息 按序号排序 保证各节点推送的顺序一致
+     */
+    private void flush() {
+        List<JSONObject> messages;
+        synchronized (pendingMessages) {
+            messages = new ArrayList<>(pendingMessages.values());
+            pendingMessages.clear();
+            flushScheduled = false;
+        }
+        messages.sort(Comparator.comparing(jsonObject -> jsonObject.getLongValue("seq")));
+        messages.forEach(this::send);
+    }
+
+    private void send(JSONObject jsonObject) {
+        String topic = jsonObject.getString("topic");
+        if (topic == null) {
+            webSocketServer.sendToAllClient(jsonObject.toJSONString());
+        } else {
+            webSocketServer.sendToTopic(topic, jsonObject.toJSONString());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flushExecutor.shutdown();
+    }
+}
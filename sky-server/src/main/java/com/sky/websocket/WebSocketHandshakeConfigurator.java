@@ -0,0 +1,18 @@
+package com.sky.websocket;
+
+import javax.websocket.HandshakeResponse;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpointConfig;
+
+/**
+ * WebSocket握手配置 把握手请求的请求头保存到会话属性中 建立连接后用来校验令牌
+ */
+public class WebSocketHandshakeConfigurator extends ServerEndpointConfig.Configurator {
+
+    public static final String HANDSHAKE_HEADERS = "handshakeHeaders";
+
+    @Override
+    public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request, HandshakeResponse response) {
+        sec.getUserProperties().put(HANDSHAKE_HEADERS, request.getHeaders());
+    }
+}
@@ -1,43 +1,150 @@
 package com.sky.websocket;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.properties.WebSocketProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
+
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * WebSocket服务
+ * 建立连接时使用管理端令牌认证 客户端订阅主题后只接收订阅主题的消息
+ * 管理端页面通过 ws://host/ws/{sid}?token=登录令牌 建立连接 sky.websocket.require-token为false时允许不带令牌连接
+ * 每个连接有一个有界的待发送队列 由发送线程池异步发送 慢客户端不会阻塞业务线程和其他客户端
  */
 @Component
-@ServerEndpoint("/ws/{sid}") // 跟客户端路径进行匹配 和controller类似
+@ServerEndpoint(value = "/ws/{sid}", configurator = WebSocketHandshakeConfigurator.class) // 跟客户端路径进行匹配 和controller类似
+@Slf4j
 public class WebSocketServer {
 
-    //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    // Tomcat阻塞发送消息的超时时间
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    // 订单消息主题 来单提醒和客户催单
+    public static final String TOPIC_ORDER = "order";
+
+    //存放会话对象 会话id -> 客户端
+    private static final Map<String, Client> clientMap = new ConcurrentHashMap<>();
+    // 主题 -> 订阅该主题的客户端 推送主题消息时只遍历订阅者
+    private static final Map<String, Set<Client>> topicMap = new ConcurrentHashMap<>();
+
+    // 每个连接都会创建一个WebSocketServer对象 不经过Spring注入 依赖的对象保存在静态字段中
+    private static WebSocketProperties webSocketProperties;
+    private static JwtProperties jwtProperties;
+    private static ThreadPoolTaskExecutor webSocketExecutor;
+    private static Counter droppedCounter;
+
+    @Autowired
+    public void setWebSocketProperties(WebSocketProperties webSocketProperties) {
+        WebSocketServer.webSocketProperties = webSocketProperties;
+    }
+
+    @Autowired
+    public void setJwtProperties(JwtProperties jwtProperties) {
+        WebSocketServer.jwtProperties = jwtProperties;
+    }
+
+    @Autowired
+    public void setWebSocketExecutor(ThreadPoolTaskExecutor webSocketExecutor) {
+        WebSocketServer.webSocketExecutor = webSocketExecutor;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        meterRegistry.gauge("sky.websocket.sessions", Tags.of(), clientMap, Map::size);
+        WebSocketServer.droppedCounter = meterRegistry.counter("sky.websocket.dropped");
+    }
 
     /**
      * 连接建立成功调用的方法  握手成功后连接就建立好了 由 websocekt 这个框架自动调用
+     * 令牌通过请求头或token参数传递 订阅的主题通过topics参数传递 多个主题用逗号分隔 默认订阅订单主题
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+        String token = getToken(session);
+        Long empId = token == null ? null : authenticate(token);
+        if (empId == null && (token != null || webSocketProperties.isRequireToken())) {
+            log.warn("客户端：{}令牌校验失败，断开连接", sid);
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "unauthorized"));
+            } catch (Exception e) {
+                log.debug("关闭WebSocket连接失败: {}", e.getMessage());
+            }
+            return;
+        }
+        log.info("客户端：{}建立连接，员工id：{}", sid, empId);
+        session.getUserProperties().put(BLOCKING_SEND_TIMEOUT, webSocketProperties.getSendTimeoutMillis());
+        Client client = new Client(sid, session, webSocketProperties.getQueueCapacity());
+        clientMap.put(session.getId(), client);
+
+        List<String> topics = session.getRequestParameterMap().get("topics");
+        if (topics == null || topics.isEmpty()) {
+            subscribe(client, TOPIC_ORDER);
+        } else {
+            topics.stream()
+                    .flatMap(topic -> Arrays.stream(topic.split(",")))
+                    .map(String::trim)
+                    .filter(topic -> !topic.isEmpty())
+                    .forEach(topic -> subscribe(client, topic));
+        }
     }
 
     /**
-     * 收到客户端消息后调用的方法
+     * 收到客户端消息后调用的方法 支持订阅和取消订阅主题
+     * {"action":"subscribe","topic":"order"} {"action":"unsubscribe","topic":"order"}
      *
      * @param message 客户端发送过来的消息
      */
     @OnMessage
-    public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+    public void onMessage(Session session, String message, @PathParam("sid") String sid) {
+        log.info("收到来自客户端：{}的信息:{}", sid, message);
+        Client client = clientMap.get(session.getId());
+        if (client == null) {
+            return;
+        }
+        JSONObject jsonObject;
+        try {
+            jsonObject = JSON.parseObject(message);
+        } catch (Exception e) {
+            return;
+        }
+        if (jsonObject == null || jsonObject.getString("topic") == null) {
+            return;
+        }
+        String topic = jsonObject.getString("topic");
+        if ("subscribe".equals(jsonObject.getString("action"))) {
+            subscribe(client, topic);
+        } else if ("unsubscribe".equals(jsonObject.getString("action"))) {
+            unsubscribe(client, topic);
+        }
     }
 
     /**
@@ -46,26 +153,208 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开:{}", sid);
+        Client client = clientMap.remove(session.getId());
+        if (client != null) {
+            removeSubscriptions(client);
+        }
+    }
+
+    @OnError
+    public void onError(Session session, Throwable error) {
+        log.warn("WebSocket连接异常: {}", error.getMessage());
     }
 
     /**
-     * 群发
+     * 群发 只把消息放入每个连接的待发送队列 不等待发送完成
      *
      * @param message
      */
     public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
+        for (Client client : clientMap.values()) {
+            send(client, message);
+        }
+    }
+
+    /**
+     * 向订阅了主题的连接发送消息 只把消息放入待发送队列 不等待发送完成
+     *
+     * @param topic
+     * @param message
+     */
+    public void sendToTopic(String topic, String message) {
+        Set<Client> subscribers = topicMap.get(topic);
+        if (subscribers == null) {
+            return;
+        }
+        for (Client client : subscribers) {
+            send(client, message);
+        }
+    }
+
+    /**
+     * 获取握手时传递的管理端令牌
+     *
+     * @param session
+     * @return 没有传递令牌时返回null
+     */
+    private String getToken(Session session) {
+        String token = null;
+        Map<String, List<String>> headers = (Map<String, List<String>>) session.getUserProperties()
+                .get(WebSocketHandshakeConfigurator.HANDSHAKE_HEADERS);
+        if (headers != null) {
+            List<String> values = headers.get(jwtProperties.getAdminTokenName());
+            if (values != null && !values.isEmpty()) {
+                token = values.get(0);
             }
         }
+        if (token == null) {
+            // 浏览器建立WebSocket连接时不能设置请求头 通过参数传递令牌
+            List<String> values = session.getRequestParameterMap().get("token");
+            if (values != null && !values.isEmpty()) {
+                token = values.get(0);
+            }
+        }
+        return token;
     }
 
+    /**
+     * 校验管理端令牌
+     *
+     * @param token
+     * @return 员工id 校验失败时返回null
+     */
+    private Long authenticate(String token) {
+        try {
+            Claims claims = JwtUtil.parseJWT(jwtProperties.getAdminSecretKey(), token);
+            return Long.valueOf(claims.get(JwtClaimsConstant.EMP_ID).toString());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 订阅主题 目前只能订阅订单主题 不接受其他主题 避免主题数量无限增长
+     *
+     * @param client
+     * @param topic
+     */
+    private void subscribe(Client client, String topic) {
+        if (!TOPIC_ORDER.equals(topic)) {
+            log.warn("客户端：{}不能订阅主题: {}", client.sid, topic);
+            return;
+        }
+        client.topics.add(topic);
+        topicMap.computeIfAbsent(topic, key -> ConcurrentHashMap.newKeySet()).add(client);
+    }
+
+    private void unsubscribe(Client client, String topic) {
+        client.topics.remove(topic);
+        topicMap.computeIfPresent(topic, (key, subscribers) -> {
+            subscribers.remove(client);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private void removeSubscriptions(Client client) {
+        for (String topic : client.topics) {
+            unsubscribe(client, topic);
+        }
+    }
+
+    private void send(Client client, String message) {
+        if (!client.queue.offer(message)) {
+            // 客户端接收太慢 丢弃新消息 连续丢弃过多时断开连接
+            droppedCounter.increment();
+            if (client.dropped.incrementAndGet() >= webSocketProperties.getMaxDroppedMessages()) {
+                log.warn("客户端：{}积压的消息过多，断开连接", client.sid);
+                close(client, CloseReason.CloseCodes.TRY_AGAIN_LATER);
+            }
+            return;
+        }
+        client.dropped.set(0);
+        drain(client);
+    }
+
+    /**
+     * 没有发送线程在处理该连接时 提交一个发送任务
+     *
+     * @param client
+     */
+    private void drain(Client client) {
+        if (!client.sending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            webSocketExecutor.execute(() -> flush(client));
+        } catch (TaskRejectedException e) {
+            // 消息留在队列中 下次发送消息时再提交
+            client.sending.set(false);
+            log.warn("WebSocket发送线程池已满");
+        }
+    }
+
+    /**
+     * 依次发送连接中积压的消息 同一连接同时只有一个线程发送 保证消息顺序
+     *
+     * @param client
+     */
+    private void flush(Client client) {
+        try {
+            String message;
+            while ((message = client.queue.poll()) != null) {
+                if (!client.session.isOpen()) {
+                    client.queue.clear();
+                    return;
+                }
+                try {
+                    //服务器向客户端发送消息
+                    client.session.getBasicRemote().sendText(message);
+                } catch (Exception e) {
+                    log.warn("向客户端：{}发送消息失败，断开连接: {}", client.sid, e.getMessage());
+                    close(client, CloseReason.CloseCodes.UNEXPECTED_CONDITION);
+                    return;
+                }
+            }
+        } finally {
+            client.sending.set(false);
+        }
+        // 释放发送标记前可能有新消息入队
+        if (!client.queue.isEmpty()) {
+            drain(client);
+        }
+    }
+
+    private void close(Client client, CloseReason.CloseCode closeCode) {
+        clientMap.remove(client.session.getId());
+        removeSubscriptions(client);
+        client.queue.clear();
+        try {
+            client.session.close(new CloseReason(closeCode, null));
+        } catch (Exception e) {
+            log.debug("关闭WebSocket连接失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 客户端连接及其待发送的消息
+     */
+    private static class Client {
+        private final String sid;
+        private final Session session;
+        // 订阅的主题
+        private final Set<String> topics = ConcurrentHashMap.newKeySet();
+        private final Queue<String> queue;
+        // 是否有发送线程正在处理该连接
+        private final AtomicBoolean sending = new AtomicBoolean();
+        // 连续丢弃的消息数
+        private final AtomicInteger dropped = new AtomicInteger();
+
+        private Client(String sid, Session session, int queueCapacity) {
+            this.sid = sid;
+            this.session = session;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+    }
 }
@@ -0,0 +1,246 @@
+package com.sky.aspect;
+
+import com.sky.annotation.DistributedLock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分布式锁切面测试 使用内存中的Map模拟Redis的SET NX和释放锁脚本 租约到期通过删除Map中的key模拟
+ */
+class DistributedLockAspectTest {
+
+    // 模拟Redis中的锁 key -> 持有者标识
+    private final Map<String, String> locks = new ConcurrentHashMap<>();
+    // 释放锁时保留的毫秒数 key -> 剩余毫秒数
+    private final Map<String, Long> retained = new ConcurrentHashMap<>();
+    // 释放锁脚本的返回值 按调用顺序记录
+    private final List<Long> releaseResults = new CopyOnWriteArrayList<>();
+
+    private ValueOperations<String, String> valueOperations;
+    private SimpleMeterRegistry meterRegistry;
+    private DistributedLockAspect aspect;
+
+    static class Jobs {
+        @DistributedLock
+        public void run() {
+        }
+
+        @DistributedLock(value = "stats", minLeaseMillis = 30 * 1000)
+        public void refresh() {
+        }
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS)))
+                .thenAnswer(inv -> locks.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null);
+        doAnswer(inv -> {
+            String key = ((List<String>) inv.getArgument(1)).get(0);
+            String owner = inv.getArgument(2);
+            long remainMillis = Long.parseLong(inv.getArgument(3));
+            if (!owner.equals(locks.get(key))) {
+                releaseResults.add(0L);
+                return 0L;
+            }
+            if (remainMillis > 0) {
+                retained.put(key, remainMillis);
+            } else {
+                locks.remove(key);
+            }
+            releaseResults.add(1L);
+            return 1L;
+        }).when(stringRedisTemplate).execute(any(RedisScript.class), anyList(), any(), any());
+
+        meterRegistry = new SimpleMeterRegistry();
+        aspect = new DistributedLockAspect();
+        ReflectionTestUtils.setField(aspect, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(aspect, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    void runsMethodAndReleasesLock() throws Throwable {
+        ProceedingJoinPoint joinPoint = joinPoint("run", () -> "done");
+
+        assertEquals("done", aspect.lock(joinPoint));
+        assertFalse(locks.containsKey("lock:Jobs.run"));
+        assertEquals(1, count("Jobs.run", "acquired"));
+    }
+
+    @Test
+    void skipsWhenLockIsHeldByAnotherOwner() throws Throwable {
+        locks.put("lock:Jobs.run", "other-node:1");
+        ProceedingJoinPoint joinPoint = joinPoint("run", () -> "done");
+
+        assertNull(aspect.lock(joinPoint));
+        verify(joinPoint, never()).proceed();
+        // 其他节点的锁不能被释放
+        assertEquals("other-node:1", locks.get("lock:Jobs.run"));
+        assertEquals(1, count("Jobs.run", "skipped"));
+    }
+
+    @Test
+    void skipsWhenRedisIsUnavailable() throws Throwable {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS)))
+                .thenThrow(new RedisConnectionFailureException("connection refused"));
+        ProceedingJoinPoint joinPoint = joinPoint("run", () -> "done");
+
+        assertNull(aspect.lock(joinPoint));
+        verify(joinPoint, never()).proceed();
+        assertEquals(1, count("Jobs.run", "error"));
+    }
+
+    @Test
+    void releasesLockWhenMethodThrows() throws Throwable {
+        ProceedingJoinPoint joinPoint = joinPoint("run", () -> {
+            throw new IllegalStateException("failed");
+        });
+
+        assertThrows(IllegalStateException.class, () -> aspect.lock(joinPoint));
+        assertFalse(locks.containsKey("lock:Jobs.run"));
+    }
+
+    @Test
+    void keepsLockUntilMinLeaseEnds() throws Throwable {
+        ProceedingJoinPoint first = joinPoint("refresh", () -> "done");
+        ProceedingJoinPoint second = joinPoint("refresh", () -> "done");
+
+        assertEquals("done", aspect.lock(first));
+        // 执行完成后锁仍然保留 同一轮任务在其他节点上不会再次执行
+        assertTrue(locks.containsKey("lock:stats"));
+        long remainMillis = retained.get("lock:stats");
+        assertTrue(remainMillis > 0 && remainMillis <= 30 * 1000);
+
+        assertNull(aspect.lock(second));
+        verify(second, never()).proceed();
+    }
+
+    @Test
+    void onlyOneCallerRunsAtATime() throws Throwable {
+        int threads = 8;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger executed = new AtomicInteger();
+        ProceedingJoinPoint joinPoint = joinPoint("run", () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            executed.incrementAndGet();
+            return null;
+        });
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        return aspect.lock(joinPoint);
+                    } catch (Throwable e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Object> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, maxRunning.get());
+        assertTrue(executed.get() >= 1);
+        assertEquals(threads, executed.get() + count("Jobs.run", "skipped"));
+        assertFalse(locks.containsKey("lock:Jobs.run"));
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndOldOwnerCannotReleaseIt() throws Throwable {
+        CountDownLatch secondRunning = new CountDownLatch(1);
+        CountDownLatch secondMayFinish = new CountDownLatch(1);
+        ProceedingJoinPoint second = joinPoint("run", () -> {
+            secondRunning.countDown();
+            secondMayFinish.await();
+            return "second";
+        });
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            List<Future<Object>> secondResult = new ArrayList<>();
+            ProceedingJoinPoint first = joinPoint("run", () -> {
+                String firstOwner = locks.get("lock:Jobs.run");
+                // 第一个持有者执行太久 租约到期 Redis删除了key
+                locks.remove("lock:Jobs.run");
+                secondResult.add(pool.submit(() -> {
+                    try {
+                        return aspect.lock(second);
+                    } catch (Throwable e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+                assertTrue(secondRunning.await(10, TimeUnit.SECONDS));
+                assertNotEquals(firstOwner, locks.get("lock:Jobs.run"));
+                return "first";
+            });
+
+            assertEquals("first", aspect.lock(first));
+            // 第一个持有者释放时锁已属于第二个持有者 释放脚本返回0 不会删除别人的锁
+            assertEquals(Collections.singletonList(0L), releaseResults);
+            assertTrue(locks.containsKey("lock:Jobs.run"));
+
+            secondMayFinish.countDown();
+            assertEquals("second", secondResult.get(0).get(10, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(0L, 1L), releaseResults);
+            assertFalse(locks.containsKey("lock:Jobs.run"));
+            assertEquals(2, count("Jobs.run", "acquired"));
+        } finally {
+            secondMayFinish.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    private ProceedingJoinPoint joinPoint(String methodName, Callable<Object> body) throws Throwable {
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(Jobs.class.getDeclaredMethod(methodName));
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.proceed()).thenAnswer(inv -> body.call());
+        return joinPoint;
+    }
+
+    private int count(String lock, String result) {
+        return (int) meterRegistry.counter("sky.lock.acquire", "lock", lock, "result", result).count();
+    }
+}
@@ -0,0 +1,93 @@
+package com.sky.config;
+
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.result.Result;
+import com.sky.vo.DishVO;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Redis value序列化器测试 三种序列化方式都能还原缓存中的对象
+ */
+@Slf4j
+class RedisConfigurationTest {
+
+    private static final List<String> SERIALIZERS = Arrays.asList("jdk", "json", "smile");
+
+    // 日期时间格式只精确到分钟
+    private static final LocalDateTime UPDATE_TIME = LocalDateTime.of(2024, 1, 1, 12, 30);
+
+    private final RedisConfiguration redisConfiguration = new RedisConfiguration();
+
+    @Test
+    void dishListRoundTrips() {
+        List<DishVO> dishList = new ArrayList<>(Arrays.asList(dish(1L, "宫保鸡丁"), dish(2L, "水煮鱼")));
+        for (String name : SERIALIZERS) {
+            RedisSerializer<Object> serializer = redisConfiguration.redisValueSerializer(name);
+            byte[] bytes = serializer.serialize(dishList);
+            log.info("{}序列化菜品列表: {}字节", name, bytes.length);
+            assertEquals(dishList, serializer.deserialize(bytes), name);
+        }
+    }
+
+    @Test
+    void cachedResultRoundTrips() {
+        Setmeal setmeal = Setmeal.builder()
+                .id(1L)
+                .categoryId(13L)
+                .name("商务套餐A")
+                .price(new BigDecimal("36.5"))
+                .status(1)
+                .createTime(UPDATE_TIME)
+                .updateTime(UPDATE_TIME)
+                .createUser(1L)
+                .updateUser(1L)
+                .build();
+        Result<List<Setmeal>> result = Result.success(new ArrayList<>(Arrays.asList(setmeal)));
+        for (String name : SERIALIZERS) {
+            RedisSerializer<Object> serializer = redisConfiguration.redisValueSerializer(name);
+            assertEquals(result, serializer.deserialize(serializer.serialize(result)), name);
+        }
+    }
+
+    @Test
+    void nullValueRoundTrips() {
+        // 缓存管理器用NullValue保存空值 读出来必须仍是NullValue 不能是Map
+        for (String name : SERIALIZERS) {
+            RedisSerializer<Object> serializer = redisConfiguration.redisValueSerializer(name);
+            assertTrue(serializer.deserialize(serializer.serialize(NullValue.INSTANCE)) instanceof NullValue, name);
+        }
+    }
+
+    @Test
+    void rejectsUnknownSerializer() {
+        assertThrows(IllegalArgumentException.class, () -> redisConfiguration.redisValueSerializer("xml"));
+    }
+
+    private DishVO dish(Long id, String name) {
+        DishFlavor flavor = DishFlavor.builder().id(id * 10).dishId(id).name("辣度").value("[\"微辣\",\"中辣\"]").build();
+        return DishVO.builder()
+                .id(id)
+                .name(name)
+                .categoryId(11L)
+                .price(new BigDecimal("28.5"))
+                .image("https://example.com/" + id + ".png")
+                .description("招牌菜")
+                .status(1)
+                .updateTime(UPDATE_TIME)
+                .categoryName("热菜")
+                .flavors(new ArrayList<>(Arrays.asList(flavor)))
+                .build();
+    }
+}
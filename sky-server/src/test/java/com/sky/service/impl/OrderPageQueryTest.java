@@ -0,0 +1,130 @@
+package com.sky.service.impl;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.result.PageResult;
+import com.sky.vo.OrderVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单分页查询测试 一页N个订单只执行分页查询和批量查询明细两条语句
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderPageQueryTest {
+
+    private static final int ORDER_COUNT = 10;
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    @AfterEach
+    void tearDown() {
+        PageHelper.clearPage();
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    void userHistoryPageLoadsDetailsInOneQuery() {
+        BaseContext.setCurrentId(7L);
+        when(orderMapper.pageQuery(any())).thenReturn(page(ORDER_COUNT));
+        when(orderDetailMapper.getByOrderIds(anyList())).thenReturn(details(ORDER_COUNT));
+
+        PageResult pageResult = orderService.pageQuery4User(query());
+
+        verify(orderMapper, times(1)).pageQuery(any());
+        verifyNoMoreInteractions(orderMapper);
+        ArgumentCaptor<List<Long>> orderIds = ArgumentCaptor.forClass(List.class);
+        verify(orderDetailMapper, times(1)).getByOrderIds(orderIds.capture());
+        verifyNoMoreInteractions(orderDetailMapper);
+        assertEquals(ORDER_COUNT, orderIds.getValue().size());
+
+        List<OrderVO> records = pageResult.getRecords();
+        assertEquals(ORDER_COUNT, records.size());
+        for (OrderVO orderVO : records) {
+            // 每个订单只拿到自己的两条明细
+            assertEquals(2, orderVO.getOrderDetailList().size());
+            assertTrue(orderVO.getOrderDetailList().stream().allMatch(d -> d.getOrderId().equals(orderVO.getId())));
+        }
+    }
+
+    @Test
+    void adminSearchPageLoadsDetailsInOneQuery() {
+        when(orderMapper.pageQuery(any())).thenReturn(page(ORDER_COUNT));
+        when(orderDetailMapper.getByOrderIds(anyList())).thenReturn(details(ORDER_COUNT));
+
+        PageResult pageResult = orderService.conditionSearch(query());
+
+        verify(orderMapper, times(1)).pageQuery(any());
+        verifyNoMoreInteractions(orderMapper);
+        verify(orderDetailMapper, times(1)).getByOrderIds(anyList());
+        verifyNoMoreInteractions(orderDetailMapper);
+
+        List<OrderVO> records = pageResult.getRecords();
+        assertEquals(ORDER_COUNT, records.size());
+        assertEquals("菜品1*1;菜品1*2;", records.get(0).getOrderDishes());
+    }
+
+    @Test
+    void emptyPageSkipsDetailQuery() {
+        BaseContext.setCurrentId(7L);
+        when(orderMapper.pageQuery(any())).thenReturn(page(0));
+
+        PageResult pageResult = orderService.pageQuery4User(query());
+
+        assertTrue(pageResult.getRecords().isEmpty());
+        verifyNoInteractions(orderDetailMapper);
+    }
+
+    private OrdersPageQueryDTO query() {
+        OrdersPageQueryDTO ordersPageQueryDTO = new OrdersPageQueryDTO();
+        ordersPageQueryDTO.setPage(1);
+        ordersPageQueryDTO.setPageSize(ORDER_COUNT);
+        return ordersPageQueryDTO;
+    }
+
+    private Page<Orders> page(int count) {
+        Page<Orders> page = new Page<>(1, ORDER_COUNT);
+        LocalDateTime orderTime = LocalDateTime.of(2024, 1, 1, 12, 0);
+        for (long id = 1; id <= count; id++) {
+            page.add(Orders.builder().id(id).number(String.valueOf(1000 + id)).orderTime(orderTime.minusMinutes(id)).build());
+        }
+        page.setTotal(count);
+        return page;
+    }
+
+    private List<OrderDetail> details(int count) {
+        List<OrderDetail> details = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            details.addAll(Arrays.asList(
+                    OrderDetail.builder().orderId(id).name("菜品" + id).number(1).build(),
+                    OrderDetail.builder().orderId(id).name("菜品" + id).number(2).build()));
+        }
+        return details;
+    }
+}
@@ -0,0 +1,145 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.OrderTimeoutService;
+import com.sky.service.RefundService;
+import com.sky.websocket.WebSocketBroadcaster;
+import com.sky.websocket.WebSocketServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 支付成功回调测试 是否处理由订单的条件更新决定 Redis标记只用于快速跳过重复回调
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderPaySuccessTest {
+
+    private static final String OUT_TRADE_NO = "1001";
+    private static final String TRANSACTION_ID = "4200001";
+    private static final String KEY = "pay_notify:" + TRANSACTION_ID;
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+    @Mock
+    private RefundService refundService;
+    @Mock
+    private OrderTimeoutService orderTimeoutService;
+    @Mock
+    private WebSocketBroadcaster webSocketBroadcaster;
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    @Test
+    void firstCallbackPaysOrderAndWritesMarker() {
+        when(stringRedisTemplate.hasKey(KEY)).thenReturn(false);
+        when(orderMapper.getByNumber(OUT_TRADE_NO)).thenReturn(order(Orders.PENDING_PAYMENT, Orders.UN_PAID));
+        when(orderMapper.updatePayStatus(eq(1L), eq(Orders.PENDING_PAYMENT), eq(Orders.TO_BE_CONFIRMED), eq(Orders.PAID), any()))
+                .thenReturn(1);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        orderService.paySuccess(OUT_TRADE_NO, TRANSACTION_ID);
+
+        verify(valueOperations).set(KEY, OUT_TRADE_NO, 48, TimeUnit.HOURS);
+        verify(orderTimeoutService).remove(1L);
+        verify(webSocketBroadcaster).broadcast(eq(WebSocketServer.TOPIC_ORDER), anyMap());
+        verifyNoInteractions(refundService);
+    }
+
+    @Test
+    void duplicateCallbackWithMarkerSkipsDatabase() {
+        when(stringRedisTemplate.hasKey(KEY)).thenReturn(true);
+
+        orderService.paySuccess(OUT_TRADE_NO, TRANSACTION_ID);
+
+        verifyNoInteractions(orderMapper, refundService, orderTimeoutService, webSocketBroadcaster);
+    }
+
+    @Test
+    void duplicateCallbackWithoutMarkerIsDecidedByDatabase() {
+        // 标记已过期或写入失败 订单已被第一次回调修改为已支付
+        when(stringRedisTemplate.hasKey(KEY)).thenReturn(false);
+        when(orderMapper.getByNumber(OUT_TRADE_NO)).thenReturn(order(Orders.PENDING_PAYMENT, Orders.UN_PAID));
+        when(orderMapper.updatePayStatus(anyLong(), any(), any(), any(), any())).thenReturn(0);
+        when(orderMapper.getById(1L)).thenReturn(order(Orders.TO_BE_CONFIRMED, Orders.PAID));
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        orderService.paySuccess(OUT_TRADE_NO, TRANSACTION_ID);
+
+        verifyNoInteractions(refundService, orderTimeoutService, webSocketBroadcaster);
+        verify(valueOperations).set(KEY, OUT_TRADE_NO, 48, TimeUnit.HOURS);
+    }
+
+    @Test
+    void callbackAfterFailedAttemptIsProcessedAgain() {
+        // 上一次回调在修改订单前失败 没有留下任何标记 微信重试时正常处理
+        when(stringRedisTemplate.hasKey(KEY)).thenReturn(false);
+        when(orderMapper.getByNumber(OUT_TRADE_NO)).thenReturn(order(Orders.PENDING_PAYMENT, Orders.UN_PAID));
+        when(orderMapper.updatePayStatus(anyLong(), any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(1);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        assertThrows(IllegalStateException.class, () -> orderService.paySuccess(OUT_TRADE_NO, TRANSACTION_ID));
+        verifyNoInteractions(valueOperations);
+
+        orderService.paySuccess(OUT_TRADE_NO, TRANSACTION_ID);
+
+        verify(valueOperations).set(KEY, OUT_TRADE_NO, 48, TimeUnit.HOURS);
+        verify(orderTimeoutService).remove(1L);
+        verify(webSocketBroadcaster).broadcast(eq(WebSocketServer.TOPIC_ORDER), anyMap());
+    }
+
+    @Test
+    void callbackProceedsWhenRedisIsUnavailable() {
+        when(stringRedisTemplate.hasKey(KEY)).thenThrow(new IllegalStateException("redis unavailable"));
+        when(orderMapper.getByNumber(OUT_TRADE_NO)).thenReturn(order(Orders.PENDING_PAYMENT, Orders.UN_PAID));
+        when(orderMapper.updatePayStatus(anyLong(), any(), any(), any(), any())).thenReturn(1);
+        when(stringRedisTemplate.opsForValue()).thenThrow(new IllegalStateException("redis unavailable"));
+
+        orderService.paySuccess(OUT_TRADE_NO, TRANSACTION_ID);
+
+        verify(orderTimeoutService).remove(1L);
+        verify(webSocketBroadcaster).broadcast(eq(WebSocketServer.TOPIC_ORDER), anyMap());
+    }
+
+    @Test
+    void latePaymentOnCancelledOrderIsRefunded() {
+        Orders cancelled = order(Orders.CANCELLED, Orders.UN_PAID);
+        when(stringRedisTemplate.hasKey(KEY)).thenReturn(false);
+        when(orderMapper.getByNumber(OUT_TRADE_NO)).thenReturn(order(Orders.PENDING_PAYMENT, Orders.UN_PAID));
+        when(orderMapper.updatePayStatus(anyLong(), any(), any(), any(), any())).thenReturn(0);
+        when(orderMapper.getById(1L)).thenReturn(cancelled);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        orderService.paySuccess(OUT_TRADE_NO, TRANSACTION_ID);
+
+        verify(refundService).createRefund(cancelled);
+        verifyNoInteractions(orderTimeoutService, webSocketBroadcaster);
+    }
+
+    private Orders order(Integer status, Integer payStatus) {
+        return Orders.builder()
+                .id(1L)
+                .number(OUT_TRADE_NO)
+                .status(status)
+                .payStatus(payStatus)
+                .build();
+    }
+}
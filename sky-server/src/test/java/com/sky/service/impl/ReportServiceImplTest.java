@@ -0,0 +1,189 @@
+package com.sky.service.impl;
+
+import com.sky.dto.DailyOrderStatDTO;
+import com.sky.dto.DailyUserStatDTO;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.exception.ReportExportException;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportExportProperties;
+import com.sky.vo.OrderReportVO;
+import com.sky.vo.TurnoverReportVO;
+import com.sky.vo.UserReportVO;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.http.HttpServletResponse;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 报表统计测试 汇总表和实时统计只返回有数据的日期 缺失的日期补0
+ */
+@Slf4j
+class ReportServiceImplTest {
+
+    private final LocalDate today = LocalDate.now();
+
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+    private OrderMapper orderMapper;
+    private UserMapper userMapper;
+    private ReportServiceImpl reportService;
+
+    @BeforeEach
+    void setUp() {
+        dailyBusinessStatsMapper = mock(DailyBusinessStatsMapper.class);
+        orderMapper = mock(OrderMapper.class);
+        userMapper = mock(UserMapper.class);
+
+        DailyBusinessStatsServiceImpl dailyBusinessStatsService = new DailyBusinessStatsServiceImpl();
+        ReflectionTestUtils.setField(dailyBusinessStatsService, "dailyBusinessStatsMapper", dailyBusinessStatsMapper);
+        ReflectionTestUtils.setField(dailyBusinessStatsService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(dailyBusinessStatsService, "userMapper", userMapper);
+
+        reportService = new ReportServiceImpl();
+        ReflectionTestUtils.setField(reportService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(reportService, "userMapper", userMapper);
+        ReflectionTestUtils.setField(reportService, "dailyBusinessStatsService", dailyBusinessStatsService);
+        ReflectionTestUtils.setField(reportService, "reportExportProperties", new ReportExportProperties());
+    }
+
+    @Test
+    void missingDaysAreZeroFilled() {
+        LocalDate begin = today.minusDays(10);
+        LocalDate end = today.minusDays(4);
+        // 汇总表只有第1天和第4天 其余日期实时统计 实时统计也只有部分日期有数据
+        when(dailyBusinessStatsMapper.listByDate(begin, end)).thenReturn(Arrays.asList(
+                stats(begin.plusDays(3), "30", 2, 1, 0),
+                stats(begin, "100", 5, 4, 1)));
+        when(orderMapper.countAndSumGroupByDate(any())).thenReturn(Collections.singletonList(
+                new DailyOrderStatDTO(begin.plusDays(5), 3, 2, 50.0)));
+        when(userMapper.countGroupByDate(any())).thenReturn(Collections.singletonList(
+                new DailyUserStatDTO(begin.plusDays(2), 4)));
+        when(userMapper.countByMap(any())).thenReturn(10);
+
+        TurnoverReportVO turnover = reportService.getTurnoverStatistics(begin, end);
+        assertEquals(7, turnover.getDateList().split(",").length);
+        assertTrue(turnover.getDateList().startsWith(begin.toString()));
+        assertTrue(turnover.getDateList().endsWith(end.toString()));
+        assertEquals("100.0,0.0,0.0,30.0,0.0,50.0,0.0", turnover.getTurnoverList());
+
+        UserReportVO user = reportService.getUserStatistics(begin, end);
+        assertEquals("1,0,4,0,0,0,0", user.getNewUserList());
+        assertEquals("11,11,15,15,15,15,15", user.getTotalUserList());
+
+        OrderReportVO order = reportService.getOrderStatistics(begin, end);
+        assertEquals("5,0,0,2,0,3,0", order.getOrderCountList());
+        assertEquals("4,0,0,1,0,2,0", order.getValidOrderCountList());
+        assertEquals(10, (int) order.getTotalOrderCount());
+        assertEquals(7, (int) order.getValidOrderCount());
+        assertEquals(0.7, order.getOrderCompletionRate(), 1e-9);
+    }
+
+    @Test
+    void liveQueryCoversOnlyMissingDays() {
+        LocalDate begin = today.minusDays(10);
+        LocalDate end = today.minusDays(4);
+        when(dailyBusinessStatsMapper.listByDate(begin, end)).thenReturn(Arrays.asList(
+                stats(begin, "100", 5, 4, 1),
+                stats(end, "20", 1, 1, 0)));
+
+        reportService.getTurnoverStatistics(begin, end);
+
+        // 实时统计从第一个缺失的日期开始 到最后一个缺失的日期结束
+        Map map = captureLiveQuery();
+        assertEquals(LocalDateTime.of(begin.plusDays(1), LocalTime.MIN), map.get("begin"));
+        assertEquals(LocalDateTime.of(end.minusDays(1), LocalTime.MAX), map.get("end"));
+    }
+
+    @Test
+    void rangeEndingTodayReadsSummaryOnlyUntilYesterday() {
+        LocalDate begin = today.minusDays(2);
+        when(dailyBusinessStatsMapper.listByDate(begin, today.minusDays(1))).thenReturn(Arrays.asList(
+                stats(begin, "10", 1, 1, 0),
+                stats(today.minusDays(1), "20", 2, 2, 0)));
+        when(orderMapper.countAndSumGroupByDate(any())).thenReturn(Collections.singletonList(
+                new DailyOrderStatDTO(today, 1, 1, 8.5)));
+
+        TurnoverReportVO turnover = reportService.getTurnoverStatistics(begin, today);
+
+        verify(dailyBusinessStatsMapper).listByDate(begin, today.minusDays(1));
+        assertEquals("10.0,20.0,8.5", turnover.getTurnoverList());
+        Map map = captureLiveQuery();
+        assertEquals(LocalDateTime.of(today, LocalTime.MIN), map.get("begin"));
+        assertEquals(LocalDateTime.of(today, LocalTime.MAX), map.get("end"));
+    }
+
+    @Test
+    void todayOnlyDoesNotReadSummary() {
+        OrderReportVO order = reportService.getOrderStatistics(today, today);
+
+        verify(dailyBusinessStatsMapper, never()).listByDate(any(), any());
+        assertEquals(today.toString(), order.getDateList());
+        assertEquals("0", order.getOrderCountList());
+        // 没有订单时完成率为0
+        assertEquals(0.0, order.getOrderCompletionRate(), 1e-9);
+    }
+
+    @Test
+    void queryCountDoesNotGrowWithRange() {
+        List<Integer> ranges = Arrays.asList(7, 30, 90, 365);
+        for (int days : ranges) {
+            LocalDate begin = today.minusDays(days);
+            LocalDate end = today.minusDays(1);
+            long start = System.nanoTime();
+            TurnoverReportVO turnover = reportService.getTurnoverStatistics(begin, end);
+            log.info("统计{}天营业额耗时{}微秒", days, (System.nanoTime() - start) / 1000);
+            assertEquals(days, turnover.getTurnoverList().split(",").length);
+        }
+        // 每次统计无论区间多长 汇总表、订单表和用户表各查询一次
+        verify(dailyBusinessStatsMapper, times(ranges.size())).listByDate(any(), any());
+        verify(orderMapper, times(ranges.size())).countAndSumGroupByDate(any());
+        verify(userMapper, times(ranges.size())).countGroupByDate(any());
+    }
+
+    @Test
+    void syncExportRejectsInvalidRangeBeforeWriting() throws Exception {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        assertThrows(ReportExportException.class,
+                () -> reportService.exportBusinessData(today.minusDays(1), today.minusDays(2), response));
+        // 默认最多导出366天
+        assertThrows(ReportExportException.class,
+                () -> reportService.exportBusinessData(today.minusDays(367), today.minusDays(1), response));
+        assertDoesNotThrow(() -> reportService.checkExportDateRange(today.minusDays(366), today.minusDays(1)));
+
+        verify(response, never()).getOutputStream();
+        verifyNoInteractions(dailyBusinessStatsMapper, orderMapper, userMapper);
+    }
+
+    private Map captureLiveQuery() {
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(orderMapper).countAndSumGroupByDate(captor.capture());
+        return captor.getValue();
+    }
+
+    private DailyBusinessStats stats(LocalDate date, String turnover, int totalOrderCount, int validOrderCount, int newUsers) {
+        return DailyBusinessStats.builder()
+                .statDate(date)
+                .turnover(new BigDecimal(turnover))
+                .totalOrderCount(totalOrderCount)
+                .validOrderCount(validOrderCount)
+                .newUsers(newUsers)
+                .build();
+    }
+}
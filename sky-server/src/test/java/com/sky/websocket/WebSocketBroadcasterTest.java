@@ -0,0 +1,121 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.WebSocketProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebSocket广播测试 直接调用onMessage模拟收到Redis频道中的消息
+ */
+class WebSocketBroadcasterTest {
+
+    private final WebSocketProperties webSocketProperties = new WebSocketProperties();
+    private WebSocketServer webSocketServer;
+    private WebSocketBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        webSocketProperties.setCoalesceMillis(100);
+        webSocketServer = mock(WebSocketServer.class);
+        broadcaster = new WebSocketBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "webSocketServer", webSocketServer);
+        ReflectionTestUtils.setField(broadcaster, "webSocketProperties", webSocketProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.destroy();
+    }
+
+    @Test
+    void sameOrderMessagesInWindowAreMerged() {
+        receive(1, 100);
+        receive(2, 200);
+        receive(3, 100);
+        receive(4, 100);
+
+        List<JSONObject> sent = awaitSent(2);
+        assertEquals(Arrays.asList(2L, 4L), seqs(sent));
+        assertNull(sent.get(0).getJSONArray("mergedSeqs"));
+        // 同一订单只推送最后一条 前面被合并的序号按顺序记录
+        assertEquals(100L, sent.get(1).getLongValue("orderId"));
+        assertEquals(Arrays.asList(1L, 3L), sent.get(1).getJSONArray("mergedSeqs").toJavaList(Long.class));
+    }
+
+    @Test
+    void differentTypesAreNotMerged() {
+        receive(1, 100, 1);
+        receive(2, 100, 2);
+
+        List<JSONObject> sent = awaitSent(2);
+        assertEquals(Arrays.asList(1L, 2L), seqs(sent));
+        assertTrue(sent.stream().allMatch(jsonObject -> jsonObject.getJSONArray("mergedSeqs") == null));
+    }
+
+    @Test
+    void messagesArePushedInSeqOrder() {
+        // 不同节点发布的消息到达顺序可能与序号不一致
+        receive(5, 100);
+        receive(3, 200);
+        receive(4, 300);
+
+        assertEquals(Arrays.asList(3L, 4L, 5L), seqs(awaitSent(3)));
+    }
+
+    @Test
+    void zeroWindowSendsEveryMessageImmediately() {
+        webSocketProperties.setCoalesceMillis(0);
+
+        receive(1, 100);
+        verify(webSocketServer, times(1)).sendToTopic(eq(WebSocketServer.TOPIC_ORDER), anyString());
+        receive(2, 100);
+        receive(3, 100);
+
+        List<JSONObject> sent = awaitSent(3);
+        assertEquals(Arrays.asList(1L, 2L, 3L), seqs(sent));
+        assertTrue(sent.stream().allMatch(jsonObject -> jsonObject.getJSONArray("mergedSeqs") == null));
+    }
+
+    private void receive(long seq, long orderId) {
+        receive(seq, orderId, 1);
+    }
+
+    private void receive(long seq, long orderId, int type) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("topic", WebSocketServer.TOPIC_ORDER);
+        jsonObject.put("type", type);
+        jsonObject.put("orderId", orderId);
+        jsonObject.put("seq", seq);
+        Message message = mock(Message.class);
+        when(message.getBody()).thenReturn(jsonObject.toJSONString().getBytes(StandardCharsets.UTF_8));
+        broadcaster.onMessage(message, null);
+    }
+
+    private List<JSONObject> awaitSent(int count) {
+        verify(webSocketServer, timeout(2000).times(count)).sendToTopic(eq(WebSocketServer.TOPIC_ORDER), anyString());
+        // 等待时的重复校验会重复捕获参数 推送完成后再捕获一次
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(webSocketServer, times(count)).sendToTopic(eq(WebSocketServer.TOPIC_ORDER), captor.capture());
+        return captor.getAllValues().stream().map(JSON::parseObject).collect(Collectors.toList());
+    }
+
+    private List<Long> seqs(List<JSONObject> sent) {
+        return sent.stream().map(jsonObject -> jsonObject.getLong("seq")).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,196 @@
+package com.sky.websocket;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.properties.WebSocketProperties;
+import com.sky.utils.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebSocket建立连接测试 校验管理端令牌和订阅的主题
+ */
+class WebSocketServerHandshakeTest {
+
+    private static final String SECRET_KEY = "itcast";
+    private static final String TOKEN_NAME = "token";
+
+    private final WebSocketProperties webSocketProperties = new WebSocketProperties();
+    private final List<Session> sessions = new ArrayList<>();
+    private WebSocketServer webSocketServer;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setAdminSecretKey(SECRET_KEY);
+        jwtProperties.setAdminTokenName(TOKEN_NAME);
+        jwtProperties.setAdminTtl(60 * 60 * 1000);
+
+        webSocketServer = new WebSocketServer();
+        webSocketServer.setWebSocketProperties(webSocketProperties);
+        webSocketServer.setJwtProperties(jwtProperties);
+        webSocketServer.setWebSocketExecutor(new CallerRunsExecutor());
+        webSocketServer.setMeterRegistry(new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        // 连接保存在静态字段中 测试结束后全部移除
+        for (Session session : sessions) {
+            webSocketServer.onClose(session, session.getId());
+        }
+    }
+
+    @Test
+    void validTokenInHeaderIsAccepted() throws Exception {
+        Session session = session("s1", header(validToken()), Collections.emptyMap());
+
+        webSocketServer.onOpen(session, "s1");
+
+        verify(session, never()).close(any(CloseReason.class));
+        assertReceivesOrderMessages(session);
+    }
+
+    @Test
+    void validTokenInQueryParameterIsAccepted() throws Exception {
+        Session session = session("s1", null, Collections.singletonMap("token", Collections.singletonList(validToken())));
+
+        webSocketServer.onOpen(session, "s1");
+
+        verify(session, never()).close(any(CloseReason.class));
+        assertReceivesOrderMessages(session);
+    }
+
+    @Test
+    void invalidTokenIsRejected() throws Exception {
+        Session session = session("s1", header("not-a-jwt"), Collections.emptyMap());
+
+        webSocketServer.onOpen(session, "s1");
+
+        assertRejected(session);
+    }
+
+    @Test
+    void invalidTokenIsRejectedEvenWhenTokenIsOptional() throws Exception {
+        webSocketProperties.setRequireToken(false);
+        String forged = JwtUtil.createJWT("other-secret", 60 * 1000, empClaims());
+        Session session = session("s1", header(forged), Collections.emptyMap());
+
+        webSocketServer.onOpen(session, "s1");
+
+        assertRejected(session);
+    }
+
+    @Test
+    void missingTokenIsRejectedWhenRequired() throws Exception {
+        webSocketProperties.setRequireToken(true);
+        Session session = session("s1", null, Collections.emptyMap());
+
+        webSocketServer.onOpen(session, "s1");
+
+        assertRejected(session);
+    }
+
+    @Test
+    void missingTokenIsAcceptedWhenNotRequired() throws Exception {
+        webSocketProperties.setRequireToken(false);
+        Session session = session("s1", null, Collections.emptyMap());
+
+        webSocketServer.onOpen(session, "s1");
+
+        verify(session, never()).close(any(CloseReason.class));
+        assertReceivesOrderMessages(session);
+    }
+
+    @Test
+    void foreignTopicsAreNotSubscribed() throws Exception {
+        Session session = session("s1", header(validToken()),
+                Collections.singletonMap("topics", Collections.singletonList("employee:1, sky:ws:broadcast")));
+
+        webSocketServer.onOpen(session, "s1");
+        webSocketServer.onMessage(session, "{\"action\":\"subscribe\",\"topic\":\"employee:2\"}", "s1");
+        webSocketServer.sendToTopic("employee:1", "private");
+        webSocketServer.sendToTopic("employee:2", "private");
+        webSocketServer.sendToTopic(WebSocketServer.TOPIC_ORDER, "order");
+
+        verify(session, never()).getBasicRemote();
+
+        // 订单主题可以正常订阅
+        webSocketServer.onMessage(session, "{\"action\":\"subscribe\",\"topic\":\"order\"}", "s1");
+        assertReceivesOrderMessages(session);
+    }
+
+    private void assertReceivesOrderMessages(Session session) throws Exception {
+        webSocketServer.sendToTopic(WebSocketServer.TOPIC_ORDER, "order-message");
+        verify(session.getBasicRemote()).sendText("order-message");
+    }
+
+    private void assertRejected(Session session) throws Exception {
+        ArgumentCaptor<CloseReason> captor = ArgumentCaptor.forClass(CloseReason.class);
+        verify(session).close(captor.capture());
+        assertEquals(CloseReason.CloseCodes.VIOLATED_POLICY, captor.getValue().getCloseCode());
+
+        // 被拒绝的连接不会收到任何消息
+        webSocketServer.sendToAllClient("message");
+        webSocketServer.sendToTopic(WebSocketServer.TOPIC_ORDER, "message");
+        verify(session.getBasicRemote(), never()).sendText(anyString());
+    }
+
+    private String validToken() {
+        return JwtUtil.createJWT(SECRET_KEY, 60 * 1000, empClaims());
+    }
+
+    private Map<String, Object> empClaims() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.EMP_ID, 1L);
+        return claims;
+    }
+
+    private Map<String, List<String>> header(String token) {
+        return Collections.singletonMap(TOKEN_NAME, Collections.singletonList(token));
+    }
+
+    private Session session(String id, Map<String, List<String>> headers, Map<String, List<String>> parameters) {
+        Session session = mock(Session.class);
+        RemoteEndpoint.Basic basicRemote = mock(RemoteEndpoint.Basic.class);
+        Map<String, Object> userProperties = new HashMap<>();
+        if (headers != null) {
+            userProperties.put(WebSocketHandshakeConfigurator.HANDSHAKE_HEADERS, headers);
+        }
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getUserProperties()).thenReturn(userProperties);
+        when(session.getRequestParameterMap()).thenReturn(parameters);
+        when(session.getBasicRemote()).thenReturn(basicRemote);
+        sessions.add(session);
+        return session;
+    }
+
+    /**
+     * 在调用线程中直接发送 测试时不需要等待发送线程
+     */
+    private static class CallerRunsExecutor extends ThreadPoolTaskExecutor {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.sky.websocket;
+
+import com.sky.properties.JwtProperties;
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebSocket群发压力测试 几百个连接中有一部分接收很慢
+ * 群发不能被慢连接阻塞 正常连接按顺序收到全部消息 慢连接积压后丢弃消息并在连续丢弃过多时被断开
+ */
+@Timeout(60)
+class WebSocketServerLoadTest {
+
+    private static final int FAST_CLIENTS = 250;
+    private static final int SLOW_CLIENTS = 50;
+    private static final int MESSAGES = 200;
+
+    private final WebSocketProperties webSocketProperties = new WebSocketProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // 慢连接的第一次发送一直阻塞到群发结束
+    private final CountDownLatch releaseSlowClients = new CountDownLatch(1);
+    private final List<FakeClient> clients = new ArrayList<>();
+
+    private ThreadPoolTaskExecutor executor;
+    private WebSocketServer webSocketServer;
+
+    @BeforeEach
+    void setUp() {
+        webSocketProperties.setRequireToken(false);
+        webSocketProperties.setQueueCapacity(100);
+        webSocketProperties.setMaxDroppedMessages(50);
+
+        // 慢连接各占用一个发送线程 剩余的线程足够处理正常连接
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(SLOW_CLIENTS + 16);
+        executor.setMaxPoolSize(SLOW_CLIENTS + 16);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("ws-test-");
+        executor.initialize();
+
+        webSocketServer = new WebSocketServer();
+        webSocketServer.setWebSocketProperties(webSocketProperties);
+        webSocketServer.setJwtProperties(new JwtProperties());
+        webSocketServer.setWebSocketExecutor(executor);
+        webSocketServer.setMeterRegistry(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseSlowClients.countDown();
+        // 连接保存在静态字段中 测试结束后全部移除
+        for (FakeClient client : clients) {
+            webSocketServer.onClose(client.session, client.sid);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void slowClientsDoNotBlockBroadcast() throws Exception {
+        for (int i = 0; i < FAST_CLIENTS + SLOW_CLIENTS; i++) {
+            FakeClient client = new FakeClient("client-" + i, i % 6 == 5);
+            clients.add(client);
+            webSocketServer.onOpen(client.session, client.sid);
+        }
+        List<FakeClient> fastClients = clients.stream().filter(client -> !client.slow).collect(Collectors.toList());
+        List<FakeClient> slowClients = clients.stream().filter(client -> client.slow).collect(Collectors.toList());
+        assertEquals(FAST_CLIENTS, fastClients.size());
+        assertEquals(SLOW_CLIENTS, slowClients.size());
+
+        List<String> messages = IntStream.range(0, MESSAGES).mapToObj(i -> "message-" + i).collect(Collectors.toList());
+        long start = System.nanoTime();
+        for (String message : messages) {
+            webSocketServer.sendToAllClient(message);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 慢连接还阻塞在第一条消息上 群发已经返回 说明没有等待发送完成
+        assertEquals(1, releaseSlowClients.getCount());
+        assertTrue(elapsedMillis < 5000, "群发耗时" + elapsedMillis + "毫秒");
+
+        // 正常连接按顺序收到全部消息
+        for (FakeClient client : fastClients) {
+            client.awaitReceived(MESSAGES);
+            assertEquals(messages, client.received());
+            assertNull(client.closeReason);
+        }
+
+        // 慢连接: 队列积压满后 连续丢弃maxDroppedMessages条时断开
+        int dropped = webSocketProperties.getMaxDroppedMessages();
+        for (FakeClient client : slowClients) {
+            assertNotNull(client.closeReason);
+            assertEquals(CloseReason.CloseCodes.TRY_AGAIN_LATER, client.closeReason.getCloseCode());
+        }
+        assertEquals(SLOW_CLIENTS * dropped, meterRegistry.counter("sky.websocket.dropped").count());
+
+        // 断开后不再发送积压的消息 最多只完成断开前正在发送的第一条
+        releaseSlowClients.countDown();
+        for (FakeClient client : slowClients) {
+            client.awaitIdle();
+            List<String> received = client.received();
+            assertTrue(received.isEmpty() || received.equals(messages.subList(0, 1)), "慢连接收到: " + received.size());
+        }
+    }
+
+    /**
+     * 模拟的WebSocket连接 记录收到的消息和关闭原因
+     */
+    private class FakeClient {
+        private final String sid;
+        private final boolean slow;
+        private final Session session = mock(Session.class);
+        private final RemoteEndpoint.Basic basicRemote = mock(RemoteEndpoint.Basic.class);
+        private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicBoolean open = new AtomicBoolean(true);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile CloseReason closeReason;
+
+        private FakeClient(String sid, boolean slow) throws Exception {
+            this.sid = sid;
+            this.slow = slow;
+            when(session.getId()).thenReturn(sid);
+            when(session.getUserProperties()).thenReturn(new HashMap<>());
+            when(session.getRequestParameterMap()).thenReturn(Collections.emptyMap());
+            when(session.getBasicRemote()).thenReturn(basicRemote);
+            when(session.isOpen()).thenAnswer(invocation -> open.get());
+            doAnswer(invocation -> {
+                closeReason = invocation.getArgument(0);
+                open.set(false);
+                return null;
+            }).when(session).close(any(CloseReason.class));
+            doAnswer(invocation -> {
+                sending.set(true);
+                try {
+                    if (slow) {
+                        releaseSlowClients.await();
+                    }
+                    received.add(invocation.getArgument(0));
+                } finally {
+                    sending.set(false);
+                }
+                return null;
+            }).when(basicRemote).sendText(anyString());
+        }
+
+        private List<String> received() {
+            synchronized (received) {
+                return new ArrayList<>(received);
+            }
+        }
+
+        private void awaitReceived(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (received.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+        private void awaitIdle() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (sending.get() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+-- 苍穹外卖数据库升级脚本 在原有建表脚本执行完成后按顺序执行
+
+-- 每日营业数据汇总表 已结束的日期从该表读取 当天数据实时统计
+create table if not exists daily_business_stats
+(
+    stat_date         date                     not null comment '统计日期' primary key,
+    turnover          decimal(12, 2) default 0 not null comment '营业额',
+    total_order_count int            default 0 not null comment '订单总数',
+    valid_order_count int            default 0 not null comment '有效订单数',
+    new_users         int            default 0 not null comment '新增用户数',
+    update_time       datetime                 null comment '更新时间'
+) comment '每日营业数据汇总';
+
+-- 订单分页查询按 order_time desc, id desc 排序 游标分页条件为 (order_time, id) 小于上一页最后一条
+-- InnoDB二级索引的叶子节点包含主键id 以下索引可以直接满足排序 不需要filesort
+create index idx_orders_user_time on orders (user_id, order_time);
+create index idx_orders_status_time on orders (status, order_time);
+create index idx_orders_order_time on orders (order_time);
+
+-- 购物车中同一用户的同一商品(菜品+口味 或 套餐)只保留一行 数量通过 insert ... on duplicate key update 原子累加
+-- 唯一索引中的列为null时不会判定为重复 因此使用生成列把商品标识拼接为非空字符串
+-- 执行前需要先合并已存在的重复购物车数据
+alter table shopping_cart
+    add column item_key varchar(128) generated always as
+        (concat(ifnull(dish_id, ''), '_', ifnull(setmeal_id, ''), '_', ifnull(dish_flavor, ''))) stored comment '商品标识',
+    add unique index uk_shopping_cart_user_item (user_id, item_key);
+
+-- 退款申请表 与订单状态在同一个事务中写入 由后台线程调用微信退款接口 失败后按指数退避重试
+-- 商户退款单号唯一 重复登记时忽略 微信对同一退款单号也只退款一次
+create table if not exists refund_outbox
+(
+    id              bigint auto_increment comment '主键' primary key,
+    order_id        bigint                 not null comment '订单id',
+    out_trade_no    varchar(50)            not null comment '商户订单号',
+    out_refund_no   varchar(64)            not null comment '商户退款单号',
+    refund_amount   decimal(10, 2)         not null comment '退款金额',
+    total_amount    decimal(10, 2)         not null comment '原订单金额',
+    status          tinyint      default 0 not null comment '退款状态 0待退款 1已退款 2退款失败',
+    retry_count     int          default 0 not null comment '已重试次数',
+    next_retry_time datetime               not null comment '下次处理时间',
+    last_error      varchar(500)           null comment '最后一次失败原因',
+    create_time     datetime               null comment '创建时间',
+    update_time     datetime               null comment '更新时间',
+    constraint uk_refund_outbox_out_refund_no unique (out_refund_no)
+) comment '退款申请';
+
+create index idx_refund_outbox_status_time on refund_outbox (status, next_retry_time);
+
+-- 退款单号改为雪花算法生成 每次登记都不同 一个订单只退款一次由订单id唯一索引保证
+alter table refund_outbox add unique index uk_refund_outbox_order_id (order_id);
+
+-- 订单号由雪花算法生成 支付回调、退款按订单号查询订单 订单号唯一 节点id配置重复时插入失败而不是生成重复订单号
+-- 执行前需要先检查是否已存在重复的订单号
+alter table orders add unique index uk_orders_number (number);